@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares review ingestion through
+ * {@link ProductManager#reviewProducts(java.util.Collection)} against one
+ * {@link ProductManager#reviewProduct(int, Rating, String)} call per review.
+ * <br>
+ * Each batch spreads its reviews over {@code productsPerBatch} products,
+ * scores are reported per review.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchReviewBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"1000"})
+    public int catalogSize;
+
+    @Param({"10", "1000"})
+    public int productsPerBatch;
+
+    private ProductManager manager;
+    private List<ProductReview> batch;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        manager = BenchmarkSupport.populatedManager(catalogSize);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Rating[] ratings = Rating.values();
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new ProductReview(random.nextInt(productsPerBatch) % catalogSize,
+                    ratings[1 + random.nextInt(ratings.length - 1)], "Batched"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Product> reviewBatch() {
+        return manager.reviewProducts(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Product reviewPerCall() {
+        Product last = null;
+        for (ProductReview review : batch) {
+            last = manager.reviewProduct(review.getProductId(), review.getRating(), review.getComments());
+        }
+        return last;
+    }
+}
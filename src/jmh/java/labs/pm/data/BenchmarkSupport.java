@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+/**
+ * Helpers shared by benchmarks, creates isolated {@link ProductManager}
+ * instances backed by temporary folders instead of the configured ones
+ */
+final class BenchmarkSupport {
+    private static final String[] COMMENTS = {"Was okay", "Not Bad", "Didn't like it", "Smells good",
+            "Great", "It's Good", "Yet another review"};
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Creates a configuration that points data, reports and temp folders
+     * into the given root, other settings come from {@code config.properties}
+     */
+    static ResourceBundle config(Path root, Map<String, String> overrides) throws IOException {
+        ResourceBundle defaults = ResourceBundle.getBundle("config");
+        Map<String, String> values = new HashMap<>();
+        defaults.keySet().forEach(key -> values.put(key, defaults.getString(key)));
+        for (String folder : new String[]{"data", "reports", "temp"}) {
+            Path path = Files.createDirectories(root.resolve(folder));
+            values.put(folder + ".folder", path.toString());
+        }
+        values.putAll(overrides);
+        return new ResourceBundle() {
+            @Override
+            protected Object handleGetObject(String key) {
+                return values.get(key);
+            }
+
+            @Override
+            public Enumeration<String> getKeys() {
+                return Collections.enumeration(values.keySet());
+            }
+        };
+    }
+
+    static ProductManager emptyManager() throws IOException {
+        return new ProductManager(config(Files.createTempDirectory("pm-bench"), Map.of()));
+    }
+
+    static ProductManager populatedManager(int products) throws IOException {
+        return populatedManager(products, 0);
+    }
+
+    /**
+     * Creates a manager with drinks of ids from 0 to {@code products - 1},
+     * each reviewed {@code reviewsPerProduct} times
+     */
+    static ProductManager populatedManager(int products, int reviewsPerProduct) throws IOException {
+        ProductManager manager = emptyManager();
+        for (int id = 0; id < products; id++) {
+            manager.createProduct(id, "Product" + id, price(id), Rating.NOT_RATED);
+        }
+        List<ProductReview> batch = new ArrayList<>();
+        for (int id = 0; id < products; id++) {
+            for (int review = 0; review < reviewsPerProduct; review++) {
+                batch.add(new ProductReview(id, rating(id + review), comment(id + review)));
+            }
+            if (batch.size() >= 10_000) {
+                manager.reviewProducts(batch);
+                batch.clear();
+            }
+        }
+        manager.reviewProducts(batch);
+        return manager;
+    }
+
+    /**
+     * Writes product and review files in the format of {@code config.properties},
+     * odd ids are food and even ids are drinks
+     * @return the root folder to pass to {@link #config(Path, Map)}
+     */
+    static Path dataFiles(int products, int reviewsPerProduct) throws IOException {
+        Path root = Files.createTempDirectory("pm-bench");
+        Path data = Files.createDirectories(root.resolve("data"));
+        ResourceBundle defaults = ResourceBundle.getBundle("config");
+        LocalDate bestBefore = LocalDate.now().plusDays(30);
+        for (int id = 0; id < products; id++) {
+            String product = (id % 2 == 1)
+                    ? "F, " + id + ", Food" + id + ", " + price(id) + ", 0, " + bestBefore.plusDays(id % 10)
+                    : "D, " + id + ", Drink" + id + ", " + price(id) + ", 0";
+            Files.writeString(data.resolve(MessageFormat.format(defaults.getString("product.data.file"), id)),
+                    product, StandardCharsets.UTF_8);
+            StringBuilder reviews = new StringBuilder();
+            for (int review = 0; review < reviewsPerProduct; review++) {
+                reviews.append(rating(id + review).ordinal()).append(", ").append(comment(id + review)).append('\n');
+            }
+            Files.writeString(data.resolve(MessageFormat.format(defaults.getString("reviews.data.file"), id)),
+                    reviews, StandardCharsets.UTF_8);
+        }
+        return root;
+    }
+
+    static Rating rating(int seed) {
+        return Rating.values()[1 + seed % 5];
+    }
+
+    static String comment(int seed) {
+        return COMMENTS[seed % COMMENTS.length];
+    }
+
+    static BigDecimal price(int id) {
+        return BigDecimal.valueOf(100 + id % 900, 2);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import labs.pm.app.ClientExecutors;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to serve a batch of shop clients on a fixed pool
+ * of platform threads and on a virtual thread per client
+ * <br>
+ * Each client reads discounts, reviews a product and writes its
+ * report, blocking on file I/O, like the clients of {@code Shop}.
+ * The {@code virtual} mode needs a runtime with virtual threads and
+ * fails its trials otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ClientThroughputBenchmark {
+    private static final int PRODUCTS = 100;
+
+    @Param({"platform", "virtual"})
+    public String threadsType;
+
+    @Param({"3"})
+    public int threads;
+
+    @Param({"100", "1000"})
+    public int clients;
+
+    private ProductManager manager;
+    private ExecutorService executor;
+    private List<Callable<Product>> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("virtual".equals(threadsType)) {
+            executor = ClientExecutors.virtualThreads();
+            if (executor == null) {
+                throw new IllegalStateException("Virtual threads are not available in Java " + Runtime.version());
+            }
+        } else {
+            executor = ClientExecutors.of(threadsType, threads);
+        }
+        manager = BenchmarkSupport.populatedManager(PRODUCTS, 10);
+        batch = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            String client = "Client" + i;
+            batch.add(() -> {
+                int id = ThreadLocalRandom.current().nextInt(PRODUCTS);
+                manager.getDiscounts("en-GB");
+                Product product = manager.reviewProduct(id, BenchmarkSupport.rating(id), "Yet another review");
+                manager.printProductReport(id, "en-GB", client);
+                return product;
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int serveClients() throws InterruptedException, ExecutionException {
+        int served = 0;
+        for (Future<Product> result : executor.invokeAll(batch)) {
+            if (result.get() != null) {
+                served++;
+            }
+        }
+        return served;
+    }
+}
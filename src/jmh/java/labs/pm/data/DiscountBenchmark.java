@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares {@link ProductManager#getDiscounts(String)}, served from
+ * maintained totals, against scans of the whole catalog summing
+ * {@code BigDecimal} discounts as doubles, as it used to, and summing
+ * discounts in cents
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class DiscountBenchmark {
+
+    @Param({"1000000"})
+    public int catalogSize;
+
+    private ProductManager manager;
+    private Product[] catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        manager = BenchmarkSupport.populatedManager(catalogSize);
+        List<Product> products = manager.findProducts(ProductQuery.all());
+        catalog = products.toArray(new Product[0]);
+    }
+
+    @Benchmark
+    public Map<String, String> maintainedTotals() {
+        return manager.getDiscounts("en-GB");
+    }
+
+    @Benchmark
+    public Map<String, Double> scanBigDecimal() {
+        return List.of(catalog).stream()
+                .collect(Collectors.groupingBy(product -> product.getRating().getStars(),
+                        Collectors.summingDouble(product -> product.getDiscount().doubleValue())));
+    }
+
+    @Benchmark
+    public long[] scanCents() {
+        long[] totals = new long[Rating.values().length];
+        for (Product product : catalog) {
+            totals[product.getRating().ordinal()] += product.getDiscountCents();
+        }
+        return totals;
+    }
+}
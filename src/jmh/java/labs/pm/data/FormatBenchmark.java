@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares precompiled {@link ResourceFormatter} templates rendering into
+ * a reused {@link StringBuilder} against {@link MessageFormat#format} of the
+ * bundle patterns, for every supported locale
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    @Param({"en-GB", "en-US", "fr-FR", "ru-RU", "zh-CN"})
+    public String languageTag;
+
+    private final Product product = new Food(103, "Cake", BigDecimal.valueOf(3.99), Rating.FOUR_STAR,
+            LocalDate.of(2021, 4, 19));
+    private final Review review = new Review(Rating.FIVE_STAR, "Tasty, would order again");
+    private final StringBuilder txt = new StringBuilder(256);
+    private ResourceFormatter formatter;
+    private ResourceBundle resourceBundle;
+    private NumberFormat moneyFormat;
+    private DateTimeFormatter dateFormat;
+
+    @Setup
+    public void setUp() {
+        Locale locale = Locale.forLanguageTag(languageTag);
+        formatter = new ResourceFormatter(locale);
+        resourceBundle = ResourceBundle.getBundle("resources", locale);
+        moneyFormat = NumberFormat.getCurrencyInstance(locale);
+        dateFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).localizedBy(locale);
+    }
+
+    @Benchmark
+    public StringBuilder formatProduct() {
+        txt.setLength(0);
+        return formatter.formatProduct(product, txt);
+    }
+
+    @Benchmark
+    public StringBuilder formatReview() {
+        txt.setLength(0);
+        return formatter.formatReview(review, txt);
+    }
+
+    @Benchmark
+    public String formatProductMessageFormat() {
+        return MessageFormat.format(resourceBundle.getString("product"),
+                product.getName(),
+                moneyFormat.format(product.getPrice()),
+                product.getRating().getStars(),
+                dateFormat.format(product.getBestBefore()));
+    }
+
+    @Benchmark
+    public String formatReviewMessageFormat() {
+        return MessageFormat.format(resourceBundle.getString("review"),
+                review.getRating().getStars(),
+                review.getComments());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading all product and review files when a
+ * {@link ProductManager} is created, with reviews read from CSV
+ * files or from the review log
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LoadBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    @Param({"10"})
+    public int reviewsPerProduct;
+
+    @Param({"1", "4"})
+    public String loadThreads;
+
+    @Param({"csv", "log"})
+    public String reviewsStorage;
+
+    private ResourceBundle config;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path root = BenchmarkSupport.dataFiles(catalogSize, reviewsPerProduct);
+        config = BenchmarkSupport.config(root, Map.of(
+                "data.load.threads", loadThreads,
+                "reviews.storage", reviewsStorage));
+        // the review log is converted from review files on the first load
+        new ProductManager(config);
+    }
+
+    @Benchmark
+    public ProductManager loadAllData() {
+        return new ProductManager(config);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures concurrent readers and writers of a {@link ProductManager}
+ * <br>
+ * Readers look products up, read discounts and list pages of products,
+ * writers review random products. The {@code readHeavy} group runs three
+ * readers per writer, the {@code writeHeavy} group three writers per reader.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MixedWorkloadBenchmark {
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    @Param({"10"})
+    public int reviewsPerProduct;
+
+    private ProductManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        manager = BenchmarkSupport.populatedManager(catalogSize, reviewsPerProduct);
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+
+    private void read(Blackhole blackhole) throws ProductManagerException {
+        switch (ThreadLocalRandom.current().nextInt(3)) {
+            case 0:
+                blackhole.consume(manager.findProduct(randomId()));
+                break;
+            case 1:
+                blackhole.consume(manager.getDiscounts("en-GB"));
+                break;
+            default:
+                blackhole.consume(manager.listProducts(ProductQuery.all()
+                        .rating(Rating.THREE_STAR, null)
+                        .orderBy(ProductQuery.Order.PRICE, false), 20));
+        }
+    }
+
+    private Product write() {
+        return manager.reviewProduct(randomId(), BenchmarkSupport.rating(randomId()), "Yet another review");
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(3)
+    public void readHeavyReader(Blackhole blackhole) throws ProductManagerException {
+        read(blackhole);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public Product readHeavyWriter() {
+        return write();
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public void writeHeavyReader(Blackhole blackhole) throws ProductManagerException {
+        read(blackhole);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(3)
+    public Product writeHeavyWriter() {
+        return write();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link CsvLineParser} based parsing of product and review lines
+ * in {@link ProductManager} against the {@link MessageFormat} based
+ * parsing it replaced
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    private static final String PRODUCT = "F, 103, Cake, 3.99, 4, 2021-04-19";
+    private static final String REVIEW = "4, Nice cup of tea, would order again";
+
+    private ProductManager manager;
+    private MessageFormat productFormat;
+    private MessageFormat reviewFormat;
+
+    @Setup
+    public void setUp() throws IOException {
+        manager = BenchmarkSupport.emptyManager();
+        ResourceBundle config = ResourceBundle.getBundle("config");
+        productFormat = new MessageFormat(config.getString("product.data.format"));
+        reviewFormat = new MessageFormat(config.getString("review.data.format"));
+    }
+
+    @Benchmark
+    public Product parseProduct() {
+        return manager.parseProduct(PRODUCT);
+    }
+
+    @Benchmark
+    public Review parseReview() {
+        return manager.parseReview(REVIEW);
+    }
+
+    @Benchmark
+    public Product parseProductMessageFormat() throws ParseException {
+        Object[] values = productFormat.parse(PRODUCT);
+        int id = Integer.parseInt((String) values[1]);
+        String name = (String) values[2];
+        BigDecimal price = BigDecimal.valueOf(Double.parseDouble((String) values[3]));
+        Rating rating = Rateable.convert(Integer.parseInt((String) values[4]));
+        LocalDate bestBefore = LocalDate.parse((String) values[5]);
+        return new Food(id, name, price, rating, bestBefore);
+    }
+
+    @Benchmark
+    public Review parseReviewMessageFormat() throws ParseException {
+        Object[] values = reviewFormat.parse(REVIEW);
+        return new Review(Rateable.convert(Integer.parseInt((String) values[0])), (String) values[1]);
+    }
+}
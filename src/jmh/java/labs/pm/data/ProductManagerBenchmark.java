@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single calls of {@link ProductManager} operations over catalogs
+ * of different sizes and numbers of reviews per product
+ * <br>
+ * Printed listings are discarded, reports are written to a temporary folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProductManagerBenchmark {
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    @Param({"1", "50"})
+    public int reviewsPerProduct;
+
+    private ProductManager manager;
+    private PrintStream out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        manager = BenchmarkSupport.populatedManager(catalogSize, reviewsPerProduct);
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+
+    @Benchmark
+    public Product findProduct() throws ProductManagerException {
+        return manager.findProduct(randomId());
+    }
+
+    @Benchmark
+    public Product reviewProduct() {
+        return manager.reviewProduct(randomId(), Rating.FOUR_STAR, "Yet another review");
+    }
+
+    @Benchmark
+    public Map<String, String> getDiscounts() {
+        return manager.getDiscounts("en-GB");
+    }
+
+    @Benchmark
+    public void printProductsScan() {
+        manager.printProducts(p -> p.getPrice().compareTo(BigDecimal.valueOf(2)) < 0,
+                Comparator.comparing(Product::getRating).reversed(), "en-GB");
+    }
+
+    @Benchmark
+    public void printProductsIndexed() {
+        manager.printProducts(ProductQuery.all()
+                .price(null, BigDecimal.valueOf(2))
+                .orderBy(ProductQuery.Order.RATING, true)
+                .limit(50), "en-GB");
+    }
+
+    @Benchmark
+    public void printProductReport() {
+        manager.printProductReport(randomId(), "en-GB", "bench");
+    }
+}
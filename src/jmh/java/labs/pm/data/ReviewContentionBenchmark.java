@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Compares concurrent reviews of random products in {@link ProductManager},
+ * which locks each product separately, against a store guarded by one
+ * global read/write lock, as {@code ProductManager} used to be.
+ * <br>
+ * The {@code mixed} groups add discount readers to the reviewing threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReviewContentionBenchmark {
+
+    @Param({"1000"})
+    public int catalogSize;
+
+    private ProductManager manager;
+    private GlobalLockStore baseline;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        manager = BenchmarkSupport.populatedManager(catalogSize);
+        baseline = new GlobalLockStore(catalogSize);
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Product reviewPerProductLock() {
+        return manager.reviewProduct(randomId(), Rating.FOUR_STAR, "Contended");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Product reviewGlobalLock() {
+        return baseline.reviewProduct(randomId(), Rating.FOUR_STAR, "Contended");
+    }
+
+    @Benchmark
+    @Group("mixedPerProductLock")
+    @GroupThreads(6)
+    public Product mixedPerProductLockWriter() {
+        return manager.reviewProduct(randomId(), Rating.FOUR_STAR, "Contended");
+    }
+
+    @Benchmark
+    @Group("mixedPerProductLock")
+    @GroupThreads(2)
+    public Map<String, String> mixedPerProductLockReader() {
+        return manager.getDiscounts("en-GB");
+    }
+
+    @Benchmark
+    @Group("mixedGlobalLock")
+    @GroupThreads(6)
+    public Product mixedGlobalLockWriter() {
+        return baseline.reviewProduct(randomId(), Rating.FOUR_STAR, "Contended");
+    }
+
+    @Benchmark
+    @Group("mixedGlobalLock")
+    @GroupThreads(2)
+    public Map<String, Double> mixedGlobalLockReader() {
+        return baseline.getDiscounts();
+    }
+
+    /**
+     * Reproduces the previous {@code ProductManager} design, where every
+     * review takes a single write lock shared by the whole catalog.
+     * <br>
+     * Ratings use the same {@link RatingStats} running aggregate as
+     * {@code ProductEntry}, so only the locking differs.
+     */
+    static class GlobalLockStore {
+        private final IntHashMap<Product> index;
+        private final Map<Product, List<Review>> products;
+        private final IntHashMap<RatingStats> stats;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Lock writeLock = lock.writeLock();
+        private final Lock readLock = lock.readLock();
+
+        GlobalLockStore(int size) {
+            index = new IntHashMap<>(size);
+            products = new HashMap<>(size * 2);
+            stats = new IntHashMap<>(size);
+            for (int id = 0; id < size; id++) {
+                Product product = new Drink(id, "Product" + id, BenchmarkSupport.price(id), Rating.NOT_RATED);
+                index.put(id, product);
+                products.put(product, new ArrayList<>());
+                stats.put(id, new RatingStats());
+            }
+        }
+
+        Product reviewProduct(int id, Rating rating, String comments) {
+            try {
+                writeLock.lock();
+                Product product = index.get(id);
+                List<Review> reviews = products.get(product);
+                products.remove(product, reviews);
+                reviews.add(new Review(rating, comments));
+                RatingStats ratings = stats.get(id);
+                ratings.add(rating);
+                product = product.applyRating(ratings.getRating());
+                products.put(product, reviews);
+                index.put(id, product);
+                return product;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        Map<String, Double> getDiscounts() {
+            try {
+                readLock.lock();
+                return products.keySet()
+                        .stream()
+                        .collect(Collectors.groupingBy(
+                                product -> product.getRating().getStars(),
+                                Collectors.summingDouble(product -> product.getDiscount().doubleValue())));
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+}
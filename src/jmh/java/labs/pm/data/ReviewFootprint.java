@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Measures heap retained by a million reviews kept in {@link ProductEntry}
+ * against {@code ArrayList}s of {@link Review} objects, as they used to be
+ * kept, for repeated and for unique comments
+ * <br>
+ * Run with {@code java -cp target/benchmarks.jar labs.pm.data.ReviewFootprint}
+ */
+public class ReviewFootprint {
+    private static final int PRODUCTS = 1000;
+    private static final int REVIEWS_PER_PRODUCT = 1000;
+    private static final String[] COMMENTS = {"Was okay", "Not Bad", "Didn't like it", "Smells good",
+            "Great", "It's Good", "Yet another review"};
+
+    // keeps the measured store reachable while the heap is measured
+    private static Object retained;
+
+    public static void main(String[] args) {
+        Rating[] ratings = Rating.values();
+        // comments are copied, as each one parsed from a file is a new instance
+        IntFunction<Review> repeated = i -> new Review(ratings[1 + i % 5], new String(COMMENTS[i % COMMENTS.length]));
+        IntFunction<Review> unique = i -> new Review(ratings[1 + i % 5], "Review number " + i);
+        report("repeated comments", repeated);
+        report("unique comments", unique);
+    }
+
+    private static void report(String workload, IntFunction<Review> reviews) {
+        long lists = measure(() -> {
+            List<List<Review>> store = new ArrayList<>(PRODUCTS);
+            for (int p = 0; p < PRODUCTS; p++) {
+                List<Review> list = new ArrayList<>();
+                for (int r = 0; r < REVIEWS_PER_PRODUCT; r++) {
+                    list.add(reviews.apply(p * REVIEWS_PER_PRODUCT + r));
+                }
+                store.add(list);
+            }
+            return store;
+        });
+        long entries = measure(() -> {
+            List<ProductEntry> store = new ArrayList<>(PRODUCTS);
+            for (int p = 0; p < PRODUCTS; p++) {
+                ProductEntry entry = new ProductEntry(new Drink(p, "Product" + p, BigDecimal.ONE, Rating.NOT_RATED));
+                ProductIndex index = new ProductIndex();
+                for (int r = 0; r < REVIEWS_PER_PRODUCT; r++) {
+                    entry.addReview(reviews.apply(p * REVIEWS_PER_PRODUCT + r), index);
+                }
+                store.add(entry);
+            }
+            return store;
+        });
+        System.out.printf("%-18s ArrayList<Review>: %,d bytes per million reviews%n", workload, lists);
+        System.out.printf("%-18s ProductEntry:      %,d bytes per million reviews%n", workload, entries);
+    }
+
+    private static long measure(Supplier<Object> build) {
+        long before = usedHeap();
+        retained = build.get();
+        long after = usedHeap();
+        retained = null;
+        return (after - before) * 1_000_000L / ((long) PRODUCTS * REVIEWS_PER_PRODUCT);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
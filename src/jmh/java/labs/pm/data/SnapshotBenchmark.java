@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares dump and restore of a catalog with {@link SnapshotCodec},
+ * with and without compression, against Java serialization of the same maps
+ * <br>
+ * Snapshot sizes of each format are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"10000"})
+    public int catalogSize;
+
+    @Param({"10"})
+    public int reviewsPerProduct;
+
+    private final Map<Product, List<Review>> data = new HashMap<>();
+    private final Map<Integer, RatingStats> stats = new HashMap<>();
+    private Path folder;
+    private Path serialized;
+    private Path binary;
+    private Path compressed;
+
+    @Setup
+    public void setUp() throws IOException {
+        Rating[] ratings = Rating.values();
+        for (int id = 0; id < catalogSize; id++) {
+            Product product = (id % 2 == 0)
+                    ? new Drink(id, "Product" + id, BenchmarkSupport.price(id), ratings[id % ratings.length])
+                    : new Food(id, "Product" + id, BenchmarkSupport.price(id), ratings[id % ratings.length],
+                    LocalDate.of(2021, 4, 1).plusDays(id % 30));
+            List<Review> reviews = new ArrayList<>(reviewsPerProduct);
+            for (int r = 0; r < reviewsPerProduct; r++) {
+                reviews.add(new Review(ratings[1 + (id + r) % 5], "Review " + r + " of product " + id));
+            }
+            data.put(product, reviews);
+            stats.put(id, RatingStats.of(reviews));
+        }
+        folder = Files.createTempDirectory("pm-snapshot");
+        serialized = folder.resolve("serialized.tmp");
+        binary = folder.resolve("binary.tmp");
+        compressed = folder.resolve("compressed.tmp");
+        dumpSerialization();
+        dumpBinary();
+        dumpCompressed();
+        System.out.println("Snapshot sizes: serialization=" + Files.size(serialized)
+                + " binary=" + Files.size(binary) + " compressed=" + Files.size(compressed));
+    }
+
+    @Benchmark
+    public Path dumpSerialization() throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(serialized, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)))) {
+            out.writeObject(data);
+            out.writeObject(stats);
+        }
+        return serialized;
+    }
+
+    @Benchmark
+    public Path dumpBinary() throws IOException {
+        SnapshotCodec.write(binary, data, stats, false);
+        return binary;
+    }
+
+    @Benchmark
+    public Path dumpCompressed() throws IOException {
+        SnapshotCodec.write(compressed, data, stats, true);
+        return compressed;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object restoreSerialization() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(serialized)))) {
+            Map<Product, List<Review>> restored = (Map<Product, List<Review>>) in.readObject();
+            in.readObject();
+            return restored;
+        }
+    }
+
+    @Benchmark
+    public Object restoreBinary() throws IOException {
+        Map<Product, List<Review>> restored = new HashMap<>();
+        SnapshotCodec.read(binary, restored, new HashMap<>(), StandardOpenOption.READ);
+        return restored;
+    }
+
+    @Benchmark
+    public Object restoreCompressed() throws IOException {
+        Map<Product, List<Review>> restored = new HashMap<>();
+        SnapshotCodec.read(compressed, restored, new HashMap<>(), StandardOpenOption.READ);
+        return restored;
+    }
+}
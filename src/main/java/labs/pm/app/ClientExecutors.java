@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.app;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@code ClientExecutors} creates executors running shop clients,
+ * either on a fixed pool of platform threads or on a virtual thread per client
+ * <br>
+ * Virtual threads are looked up at runtime, so the application still
+ * builds for and runs on Java 11, where the platform threads are used instead.
+ */
+public final class ClientExecutors {
+    private static final Logger logger = Logger.getLogger(ClientExecutors.class.getName());
+
+    private ClientExecutors() {
+    }
+
+    /**
+     * @return an executor starting a new virtual thread for each task,
+     * or {@code null} if the runtime does not support virtual threads
+     */
+    public static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param type {@code platform} or {@code virtual}
+     * @param threads number of platform threads, also used when
+     *                virtual threads are not available
+     */
+    public static ExecutorService of(String type, int threads) {
+        if ("virtual".equalsIgnoreCase(type)) {
+            ExecutorService executor = virtualThreads();
+            if (executor != null) {
+                return executor;
+            }
+            logger.log(Level.WARNING, "Virtual threads are not available, using " + threads + " platform threads");
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+}
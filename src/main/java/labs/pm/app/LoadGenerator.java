@@ -0,0 +1,325 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.app;
+
+import labs.pm.data.LatencyHistogram;
+import labs.pm.data.ProductManager;
+import labs.pm.data.ProductManagerException;
+import labs.pm.data.Rating;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@code LoadGenerator} runs clients calling a {@link ProductManager}
+ * concurrently and reports throughput and latency percentiles per operation
+ * <br>
+ * Settings are given as {@code key=value} arguments:
+ * <br>
+ * {@code clients} number of clients, each calling one operation after another (16)
+ * <br>
+ * {@code threads} number of threads running the clients (4)
+ * <br>
+ * {@code threads.type} {@code platform} or {@code virtual}, a virtual thread
+ * runs each operation and {@code threads} is ignored (platform)
+ * <br>
+ * {@code read.ratio} share of reads, the rest are reviews (0.8)
+ * <br>
+ * {@code report.ratio} share of reads writing a product report (0.01)
+ * <br>
+ * {@code distribution} {@code uniform} or {@code zipfian} product ids (uniform)
+ * <br>
+ * {@code zipf.exponent} skew of the zipfian distribution (0.99)
+ * <br>
+ * {@code products} number of products, missing ones are created (1000)
+ * <br>
+ * {@code duration} and {@code warmup} in seconds, operations during
+ * warmup are not reported (30, 5)
+ * <br>
+ * Operation latencies cover the call only. When clients outnumber threads,
+ * a client also waits in the executor queue before each call, that time is
+ * reported separately as {@code WAIT}.
+ */
+class LoadGenerator {
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+    private static final int FIRST_ID = 1;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    enum Operation {
+        FIND, DISCOUNTS, REPORT, REVIEW
+    }
+
+    private final ProductManager pm;
+    private final int clients;
+    private final int threads;
+    private boolean virtualThreads;
+    private final double readRatio;
+    private final double reportRatio;
+    private final int products;
+    private final double[] zipfian;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final String[] languageTags;
+
+    LoadGenerator(ProductManager pm, Map<String, String> settings) {
+        this.pm = pm;
+        clients = Integer.parseInt(settings.getOrDefault("clients", "16"));
+        threads = Integer.parseInt(settings.getOrDefault("threads", "4"));
+        virtualThreads = "virtual".equalsIgnoreCase(settings.getOrDefault("threads.type", "platform"));
+        readRatio = Double.parseDouble(settings.getOrDefault("read.ratio", "0.8"));
+        reportRatio = Double.parseDouble(settings.getOrDefault("report.ratio", "0.01"));
+        products = Integer.parseInt(settings.getOrDefault("products", "1000"));
+        zipfian = "zipfian".equalsIgnoreCase(settings.getOrDefault("distribution", "uniform"))
+                ? zipfian(products, Double.parseDouble(settings.getOrDefault("zipf.exponent", "0.99"))) : null;
+        durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(settings.getOrDefault("duration", "30")));
+        warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(settings.getOrDefault("warmup", "5")));
+        languageTags = ProductManager.getSupportedLocale().toArray(new String[0]);
+    }
+
+    /**
+     * Parses {@code key=value} arguments
+     */
+    static Map<String, String> settings(String[] args) {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected key=value argument " + arg);
+            }
+            settings.put(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+        }
+        return settings;
+    }
+
+    void run() throws InterruptedException {
+        for (int id = FIRST_ID; id < FIRST_ID + products; id++) {
+            try {
+                pm.findProduct(id);
+            } catch (ProductManagerException e) {
+                pm.createProduct(id, "Product" + id, BigDecimal.valueOf(100 + id % 900, 2), Rating.NOT_RATED);
+            }
+        }
+        ExecutorService executor = executor();
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        CountDownLatch done = new CountDownLatch(clients);
+        List<Client> running = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client("Client" + (i + 1), executor, measureFrom, end, done);
+            running.add(client);
+            client.submit();
+        }
+        done.await();
+        executor.shutdown();
+        Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram total = new LatencyHistogram();
+            running.forEach(client -> total.add(client.histograms[operation.ordinal()]));
+            histograms.put(operation, total);
+        }
+        LatencyHistogram waits = new LatencyHistogram();
+        running.forEach(client -> waits.add(client.waits));
+        report(histograms, waits, running.stream().mapToLong(client -> client.errors).sum(), end - measureFrom);
+    }
+
+    private ExecutorService executor() {
+        if (virtualThreads) {
+            ExecutorService executor = ClientExecutors.virtualThreads();
+            if (executor != null) {
+                return executor;
+            }
+            logger.log(Level.WARNING, "Virtual threads are not available, using " + threads + " platform threads");
+            virtualThreads = false;
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    private void report(Map<Operation, LatencyHistogram> histograms, LatencyHistogram waits, long errors, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%d clients, %s, read ratio %.2f, %s ids over %d products, %.0f s%n",
+                clients, virtualThreads ? "virtual threads" : threads + " threads", readRatio,
+                (zipfian != null) ? "zipfian" : "uniform", products, seconds);
+        StringBuilder header = new StringBuilder(String.format("%-10s %10s %10s %9s", "operation", "count", "ops/s", "mean us"));
+        for (double percentile : PERCENTILES) {
+            header.append(String.format(" %9s", "p" + ((percentile == Math.rint(percentile))
+                    ? String.valueOf((long) percentile) : String.valueOf(percentile))));
+        }
+        System.out.println(header.append(String.format(" %9s", "max us")));
+        LatencyHistogram all = new LatencyHistogram();
+        histograms.forEach((operation, histogram) -> {
+            all.add(histogram);
+            System.out.println(line(operation.name(), histogram, seconds));
+        });
+        System.out.println(line("ALL", all, seconds));
+        System.out.println(line("WAIT", waits, seconds));
+        if (errors > 0) {
+            System.out.println(errors + " operations failed");
+        }
+    }
+
+    private static String line(String name, LatencyHistogram histogram, double seconds) {
+        StringBuilder line = new StringBuilder(String.format("%-10s %10d %10.0f %9.1f", name,
+                histogram.getCount(), histogram.getCount() / seconds, histogram.getMean() / 1000));
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(" %9.1f", histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        return line.append(String.format(" %9.1f", histogram.getMax() / 1000.0)).toString();
+    }
+
+    /*
+     * Cumulative probabilities of ranks, rank r is chosen with probability
+     * proportional to 1 / r^exponent, lower ids being the most popular.
+     */
+    private static double[] zipfian(int products, double exponent) {
+        double[] cumulative = new double[products];
+        double sum = 0;
+        for (int rank = 0; rank < products; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < products; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private int nextId(ThreadLocalRandom random) {
+        if (zipfian == null) {
+            return FIRST_ID + random.nextInt(products);
+        }
+        int rank = Arrays.binarySearch(zipfian, random.nextDouble());
+        return FIRST_ID + Math.min((rank >= 0) ? rank : -rank - 1, products - 1);
+    }
+
+    /*
+     * A client calls one operation per task and submits itself again,
+     * so clients share the threads of the executor in turns. A client
+     * that is not submitted again, even after an error, counts down.
+     */
+    private class Client implements Runnable {
+        private final String name;
+        private final ExecutorService executor;
+        private final long measureFrom;
+        private final long end;
+        private final CountDownLatch done;
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+        private final LatencyHistogram waits = new LatencyHistogram();
+        private long errors;
+        private long submitted;
+
+        private Client(String name, ExecutorService executor, long measureFrom, long end, CountDownLatch done) {
+            this.name = name;
+            this.executor = executor;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            this.done = done;
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean resubmitted = false;
+            try {
+                if (step() < end) {
+                    submit();
+                    resubmitted = true;
+                }
+            } finally {
+                if (!resubmitted) {
+                    done.countDown();
+                }
+            }
+        }
+
+        private void submit() {
+            submitted = System.nanoTime();
+            executor.execute(this);
+        }
+
+        /*
+         * Calls one operation, returns the time it finished
+         */
+        private long step() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Operation operation = next(random);
+            int id = nextId(random);
+            String languageTag = languageTags[random.nextInt(languageTags.length)];
+            long started = System.nanoTime();
+            try {
+                call(operation, id, languageTag, random);
+            } catch (ProductManagerException e) {
+                errors++;
+                logger.log(Level.WARNING, "Error calling " + operation + " " + e.getMessage());
+            } catch (RuntimeException e) {
+                errors++;
+                logger.log(Level.SEVERE, "Error calling " + operation + " " + e.getMessage(), e);
+            }
+            long finished = System.nanoTime();
+            if (started >= measureFrom) {
+                histograms[operation.ordinal()].record(finished - started);
+                waits.record(started - submitted);
+            }
+            return finished;
+        }
+
+        private Operation next(ThreadLocalRandom random) {
+            if (random.nextDouble() >= readRatio) {
+                return Operation.REVIEW;
+            }
+            if (random.nextDouble() < reportRatio) {
+                return Operation.REPORT;
+            }
+            return random.nextBoolean() ? Operation.FIND : Operation.DISCOUNTS;
+        }
+
+        private void call(Operation operation, int id, String languageTag, ThreadLocalRandom random)
+                throws ProductManagerException {
+            switch (operation) {
+                case FIND:
+                    pm.findProduct(id);
+                    break;
+                case DISCOUNTS:
+                    pm.getDiscounts(languageTag);
+                    break;
+                case REPORT:
+                    pm.printProductReport(id, languageTag, name);
+                    break;
+                default:
+                    pm.reviewProduct(id, Rating.values()[1 + random.nextInt(5)], "Yet another review");
+            }
+        }
+    }
+}
@@ -25,9 +25,11 @@ import labs.pm.data.ProductManager;
 import labs.pm.data.Rating;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -44,10 +46,24 @@ public class Shop {
 
     /**
      *
-     * @param args the command line arguments
+     * @param args the command line arguments, {@code load} followed by
+     *             {@code key=value} settings runs the load generator,
+     *             see {@link LoadGenerator}, otherwise {@code key=value} settings
+     *             of the demo clients: {@code clients} (5), {@code threads} (3)
+     *             and {@code threads.type} {@code platform} or {@code virtual},
+     *             running each client on its own virtual thread (platform)
      */
     public static void main(String[] args) {
         ProductManager pm = ProductManager.getInstance();
+        if (args.length > 0 && "load".equals(args[0])) {
+            try {
+                new LoadGenerator(pm, LoadGenerator.settings(Arrays.copyOfRange(args, 1, args.length))).run();
+            } catch (InterruptedException e) {
+                Logger.getLogger(Shop.class.getName()).log(Level.SEVERE, "Load generator interrupted", e);
+            }
+            return;
+        }
+        Map<String, String> settings = LoadGenerator.settings(args);
 
         pm.createProduct(101,"Tea", BigDecimal.valueOf(1.99), Rating.NOT_RATED);
         pm.createProduct(102,"Coffee", BigDecimal.valueOf(2.99), Rating.NOT_RATED);
@@ -91,8 +107,11 @@ public class Shop {
             return log.toString();
         };
 
-        List<Callable<String>> clients = Stream.generate(()-> client).limit(5).collect(Collectors.toList());
-        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        List<Callable<String>> clients = Stream.generate(()-> client)
+                .limit(Integer.parseInt(settings.getOrDefault("clients", "5")))
+                .collect(Collectors.toList());
+        ExecutorService executorService = ClientExecutors.of(settings.getOrDefault("threads.type", "platform"),
+                Integer.parseInt(settings.getOrDefault("threads", "3")));
         try {
             List<Future<String>> results = executorService.invokeAll(clients);
             executorService.shutdown();
@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.List;
+
+/**
+ * {@code ColumnProductEntry} is a {@link ProductEntry} keeping its product
+ * in a row of {@link ProductColumns} instead of the heap
+ */
+class ColumnProductEntry extends ProductEntry {
+    private final ProductColumns columns;
+    private final int row;
+
+    ColumnProductEntry(ProductColumns columns, Product product, List<Review> reviews, RatingStats stats,
+                       LazyReviews source) {
+        super(null, reviews, stats, source);
+        this.columns = columns;
+        this.row = columns.add(product);
+    }
+
+    @Override
+    Product getProduct() {
+        return columns.get(row);
+    }
+
+    @Override
+    void setProduct(Product product) {
+        columns.setRating(row, product.getRating());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+/**
+ * {@code CommentInterner} shares one instance of frequently repeated
+ * review comments
+ * <br>
+ * A comment is looked up in a fixed size table by its hash, a slot holds
+ * the comment last seen there. Repeated comments keep returning the same
+ * instance, while the table never grows with unique ones.
+ * <br>
+ * Slots are read and written without locking: strings are safely
+ * published and a lost update only costs a duplicate.
+ */
+final class CommentInterner {
+    private final String[] table;
+    private final int mask;
+
+    /**
+     * @param size number of slots, rounded up to a power of two
+     */
+    CommentInterner(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        table = new String[capacity];
+        mask = capacity - 1;
+    }
+
+    String intern(String comment) {
+        if (comment == null) {
+            return null;
+        }
+        int hash = comment.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String shared = table[slot];
+        if (comment.equals(shared)) {
+            return shared;
+        }
+        table[slot] = comment;
+        return comment;
+    }
+}
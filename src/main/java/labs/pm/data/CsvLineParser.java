@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * {@code CsvLineParser} reads comma separated fields of a single data line
+ * in place, converting numbers and dates directly from the characters
+ * of the line, without splitting it into intermediate strings
+ * <br>
+ * Whitespace after a separator is skipped. String fields may be quoted
+ * with {@code "} to contain commas, a quote inside a quoted field is
+ * written twice. Instances are reusable through {@link #reset(CharSequence)}
+ * but not thread-safe.
+ */
+final class CsvLineParser {
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    private CharSequence line = "";
+    private int position;
+
+    CsvLineParser reset(CharSequence line) {
+        this.line = line;
+        this.position = 0;
+        return this;
+    }
+
+    boolean hasNext() {
+        skipWhitespace();
+        return position < line.length();
+    }
+
+    char nextChar() throws ParseException {
+        skipWhitespace();
+        if (position >= line.length()) {
+            throw error("character expected");
+        }
+        char c = line.charAt(position++);
+        endOfField();
+        return c;
+    }
+
+    int nextInt() throws ParseException {
+        skipWhitespace();
+        boolean negative = consume('-');
+        int start = position;
+        long value = 0;
+        while (position < line.length() && isDigit(line.charAt(position))) {
+            value = value * 10 + (line.charAt(position++) - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw error("integer out of range");
+            }
+        }
+        if (position == start) {
+            throw error("integer expected");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw error("integer out of range");
+        }
+        endOfField();
+        return (int) value;
+    }
+
+    /**
+     * Reads a decimal number such as {@code 1.99} keeping its scale
+     * @return a {@link java.math.BigDecimal BigDecimal} value of the field
+     */
+    BigDecimal nextDecimal() throws ParseException {
+        skipWhitespace();
+        int fieldStart = position;
+        boolean negative = consume('-');
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        while (position < line.length()) {
+            char c = line.charAt(position);
+            if (isDigit(c)) {
+                unscaled = unscaled * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (digits == 0) {
+            throw error("decimal expected");
+        }
+        BigDecimal value = (digits <= 18)
+                ? BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0))
+                : new BigDecimal(line.subSequence(fieldStart, position).toString());
+        endOfField();
+        return value;
+    }
+
+    /**
+     * Reads an ISO-8601 date such as {@code 2021-04-19}
+     * @return a {@link java.time.LocalDate LocalDate} value of the field
+     */
+    LocalDate nextDate() throws ParseException {
+        skipWhitespace();
+        int year = digits(4);
+        expect('-');
+        int month = digits(2);
+        expect('-');
+        int day = digits(2);
+        try {
+            LocalDate date = LocalDate.of(year, month, day);
+            endOfField();
+            return date;
+        } catch (DateTimeException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a string field up to the next separator
+     * @return a field value, unquoted if it was quoted
+     */
+    String nextString() throws ParseException {
+        skipWhitespace();
+        if (position < line.length() && line.charAt(position) == QUOTE) {
+            String value = quoted();
+            endOfField();
+            return value;
+        }
+        int start = position;
+        while (position < line.length() && line.charAt(position) != SEPARATOR) {
+            position++;
+        }
+        String value = line.subSequence(start, position).toString();
+        endOfField();
+        return value;
+    }
+
+    /**
+     * Reads the rest of the line as the last field, unquoted ones may contain commas
+     * <br>
+     * Text starting with a quote that is not a complete quoted field,
+     * such as {@code "Best" coffee ever}, is returned as it is.
+     * @return remaining text of the line
+     */
+    String remaining() {
+        skipWhitespace();
+        int start = position;
+        if (position < line.length() && line.charAt(position) == QUOTE) {
+            try {
+                String value = quoted();
+                skipWhitespace();
+                if (position == line.length()) {
+                    return value;
+                }
+            } catch (ParseException e) {
+                // no closing quote, the text is not quoted
+            }
+            position = start;
+        }
+        String value = line.subSequence(position, line.length()).toString();
+        position = line.length();
+        return value;
+    }
+
+    private String quoted() throws ParseException {
+        int start = ++position;
+        StringBuilder escaped = null;
+        while (position < line.length()) {
+            char c = line.charAt(position++);
+            if (c == QUOTE) {
+                if (position < line.length() && line.charAt(position) == QUOTE) {
+                    if (escaped == null) {
+                        escaped = new StringBuilder();
+                    }
+                    escaped.append(line, start, position);
+                    start = ++position;
+                } else {
+                    return (escaped == null)
+                            ? line.subSequence(start, position - 1).toString()
+                            : escaped.append(line, start, position - 1).toString();
+                }
+            }
+        }
+        throw error("closing quote expected");
+    }
+
+    private int digits(int count) throws ParseException {
+        int value = 0;
+        int start = position;
+        while (position < line.length() && isDigit(line.charAt(position)) && position - start < 9) {
+            value = value * 10 + (line.charAt(position++) - '0');
+        }
+        if (position - start < count) {
+            throw error(count + " digits expected");
+        }
+        return value;
+    }
+
+    private void expect(char c) throws ParseException {
+        if (!consume(c)) {
+            throw error("'" + c + "' expected");
+        }
+    }
+
+    private boolean consume(char c) {
+        if (position < line.length() && line.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void endOfField() throws ParseException {
+        while (position < line.length() && line.charAt(position) == ' ') {
+            position++;
+        }
+        if (position < line.length() && !consume(SEPARATOR)) {
+            throw error("separator expected");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private ParseException error(String message) {
+        return new ParseException("Error parsing \"" + line + "\" at " + position + ": " + message, position);
+    }
+}
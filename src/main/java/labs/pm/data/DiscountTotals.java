@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code DiscountTotals} maintains discounts of all products summed
+ * per rating, updated as products are created and re-rated
+ * <br>
+ * Discounts are kept in cents: drinks together, food grouped by best-before
+ * date. Totals in effect are combined from them in O(ratings) and reused
+ * until the drinks discount window opens or closes, the day changes or
+ * a product is added or re-rated.
+ * <br>
+ * Totals read while an update is in progress may not include it yet.
+ * <br>
+ * Food totals of days before the current one are dropped once the day
+ * changes, the clock is not expected to go back.
+ */
+class DiscountTotals {
+    private static final Rating[] RATINGS = Rating.values();
+
+    private final LongAdder[] products = adders();
+    private final LongAdder[] drinks = adders();
+    private final Map<LocalDate, LongAdder[]> food = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    // the day before which food totals were last dropped
+    private volatile LocalDate pruned = LocalDate.MIN;
+    private volatile Totals totals = new Totals(-1, Instant.MIN, Map.of());
+
+    void add(Product product) {
+        int rating = product.getRating().ordinal();
+        products[rating].increment();
+        discounts(product)[rating].add(product.getFullDiscountCents());
+        version.incrementAndGet();
+    }
+
+    void ratingChanged(Product before, Product after) {
+        int from = before.getRating().ordinal();
+        int to = after.getRating().ordinal();
+        if (from != to) {
+            LongAdder[] discounts = discounts(after);
+            long cents = after.getFullDiscountCents();
+            products[to].increment();
+            discounts[to].add(cents);
+            products[from].decrement();
+            discounts[from].add(-cents);
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns discounts in effect at the current time of the clock
+     * @return a {@link java.util.Map Map} of ratings of existing products
+     * to their total discount
+     */
+    Map<Rating, BigDecimal> get(Clock clock) {
+        long current = version.get();
+        Instant now = clock.instant();
+        Totals totals = this.totals;
+        if (totals.version != current || !now.isBefore(totals.validUntil)) {
+            totals = compute(current, LocalDateTime.ofInstant(now, clock.getZone()), clock);
+            this.totals = totals;
+        }
+        return totals.discounts;
+    }
+
+    private Totals compute(long version, LocalDateTime now, Clock clock) {
+        LocalTime time = now.toLocalTime();
+        LocalDate today = now.toLocalDate();
+        if (today.isAfter(pruned)) {
+            pruned = today;
+            this.food.keySet().removeIf(date -> date.isBefore(today));
+        }
+        boolean drinksDiscounted = Drink.isDiscounted(time);
+        LongAdder[] food = this.food.get(today);
+        Map<Rating, BigDecimal> discounts = new LinkedHashMap<>();
+        for (int i = 0; i < RATINGS.length; i++) {
+            if (products[i].sum() > 0) {
+                long cents = (drinksDiscounted ? drinks[i].sum() : 0) + ((food != null) ? food[i].sum() : 0);
+                discounts.put(RATINGS[i], BigDecimal.valueOf(cents, 2));
+            }
+        }
+        // the window opens just after its start and closes at its end
+        LocalDateTime validUntil = now.toLocalDate().plusDays(1).atStartOfDay();
+        if (time.compareTo(Drink.DISCOUNT_FROM) <= 0) {
+            validUntil = now.toLocalDate().atTime(Drink.DISCOUNT_FROM).plusNanos(1);
+        } else if (time.isBefore(Drink.DISCOUNT_UNTIL)) {
+            validUntil = now.toLocalDate().atTime(Drink.DISCOUNT_UNTIL);
+        }
+        return new Totals(version, validUntil.atZone(clock.getZone()).toInstant(),
+                Collections.unmodifiableMap(discounts));
+    }
+
+    /**
+     * @return number of best-before dates holding food totals
+     */
+    int foodDates() {
+        return food.size();
+    }
+
+    private LongAdder[] discounts(Product product) {
+        return (product instanceof Food)
+                ? food.computeIfAbsent(product.getBestBefore(), date -> adders())
+                : drinks;
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[RATINGS.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static final class Totals {
+        private final long version;
+        private final Instant validUntil;
+        private final Map<Rating, BigDecimal> discounts;
+
+        private Totals(long version, Instant validUntil, Map<Rating, BigDecimal> discounts) {
+            this.version = version;
+            this.validUntil = validUntil;
+            this.discounts = discounts;
+        }
+    }
+}
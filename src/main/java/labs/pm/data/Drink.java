@@ -27,22 +27,29 @@ import java.time.LocalTime;
  * @author Halil SARI
  */
 public class Drink extends Product {
-
+    static final LocalTime DISCOUNT_FROM = LocalTime.of(17, 30);
+    static final LocalTime DISCOUNT_UNTIL = LocalTime.of(18, 30);
 
     Drink(int id, String name, BigDecimal price, Rating rating) {
         super(id, name, price, rating);
     }
 
+    Drink(int id, String name, long price, Rating rating) {
+        super(id, name, price, rating);
+    }
+
     @Override
-    public BigDecimal getDiscount() {
-        LocalTime now = LocalTime.now();
-        return (now.isAfter(LocalTime.of(17, 30))
-                && now.isBefore(LocalTime.of(18, 30))) ? super.getDiscount() : BigDecimal.ZERO;
+    long getDiscountCents() {
+        return isDiscounted(LocalTime.now()) ? getFullDiscountCents() : 0;
+    }
+
+    static boolean isDiscounted(LocalTime time) {
+        return time.isAfter(DISCOUNT_FROM) && time.isBefore(DISCOUNT_UNTIL);
     }
 
     @Override
     public Product applyRating(Rating newRating) {
-        return new Drink(getId(), getName(), getPrice(), newRating);
+        return new Drink(getId(), getName(), getPriceCents(), newRating);
     }
 
 
@@ -38,18 +38,23 @@ public class Food extends Product {
         this.bestBefore = bestBefore;
     }
 
+    Food(int id, String name, long price, Rating rating, LocalDate bestBefore) {
+        super(id, name, price, rating);
+        this.bestBefore = bestBefore;
+    }
+
     @Override
-    public BigDecimal getDiscount() {
-        return (bestBefore.isEqual(LocalDate.now())) ? super.getDiscount() : BigDecimal.ZERO;
+    long getDiscountCents() {
+        return (getBestBefore().isEqual(LocalDate.now())) ? getFullDiscountCents() : 0;
     }
 
     @Override
     public Product applyRating(Rating newRating) {
-        return new Food(getId(), getName(), getPrice(), newRating, bestBefore);
+        return new Food(getId(), getName(), getPriceCents(), newRating, bestBefore);
     }
 
     @Override
     public String toString() {
-        return super.toString() + " " + bestBefore;
+        return super.toString() + " " + getBestBefore();
     }
 }
@@ -0,0 +1,419 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * {@code Journal} is a write-ahead log of product creations and reviews,
+ * replayed on startup on top of the loaded data
+ * <br>
+ * Records are written to the file immediately, but forced to disk in groups:
+ * once {@code syncRecords} records are pending or every {@code syncMillis}
+ * milliseconds, whichever comes first. Each record is stored as length,
+ * CRC32 and payload, so a torn record at the end of the journal is detected
+ * and cut off on replay. Product names and review comments are written as
+ * length prefixed UTF-8, which allows missing and long text, records of earlier
+ * versions holding modified UTF-8 text are still replayed.
+ * <br>
+ * Changes are journaled before they are applied, a change whose record
+ * cannot be written is not applied.
+ * <br>
+ * Records are numbered in the order they are written. The header holds
+ * the number of the first record in the file, so once a snapshot covering
+ * records up to a {@link #mark() mark} is persisted, those records are
+ * {@link #checkpoint(Mark) discarded} and replay can skip the ones the
+ * snapshot already holds.
+ */
+class Journal implements Closeable {
+    private static final Logger logger = Logger.getLogger(Journal.class.getName());
+    static final int MAGIC = 0x504D4A4C;
+    static final int VERSION = 2;
+    // version 1 header has no number of the first record
+    private static final int VERSION_1 = 1;
+    // products and reviews with modified UTF-8 text limited to 64 KB, replayed only
+    private static final byte DRINK_UTF = 'D';
+    private static final byte FOOD_UTF = 'F';
+    private static final byte REVIEW_UTF = 'R';
+    private static final byte DRINK = 'd';
+    private static final byte FOOD = 'f';
+    private static final byte REVIEW = 'C';
+
+    /**
+     * Receives journal records during replay
+     */
+    interface Replay {
+        void product(Product product);
+
+        void review(int id, Review review);
+    }
+
+    private final Path file;
+    private final int syncRecords;
+    private final long syncMillis;
+    private final Lock lock = new ReentrantLock();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong synced = new AtomicLong();
+    private FileChannel channel;
+    private ScheduledExecutorService syncer;
+    // number of the next record, guarded by the lock
+    private long next;
+
+    /**
+     * Position in the journal between two records
+     */
+    static final class Mark {
+        private final long sequence;
+        private final long position;
+
+        private Mark(long sequence, long position) {
+            this.sequence = sequence;
+            this.position = position;
+        }
+
+        /**
+         * @return number of records written before the mark
+         */
+        long getSequence() {
+            return sequence;
+        }
+    }
+
+    Journal(Path file, int syncRecords, long syncMillis) {
+        this.file = file;
+        this.syncRecords = Math.max(syncRecords, 1);
+        this.syncMillis = Math.max(syncMillis, 1);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long open(Replay replay) throws IOException {
+        return open(replay, 0);
+    }
+
+    /**
+     * Opens the journal, replays complete records and starts
+     * the background group commit
+     * @param from number of the first record to replay, earlier ones
+     *             are held by a restored snapshot
+     * @return number of replayed records
+     */
+    long open(Replay replay, long from) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long count = 0;
+        try {
+            if (channel.size() == 0) {
+                writeHeader(channel, 0);
+            } else {
+                long[] end = new long[2];
+                count = replay(channel, replay, from, end);
+                next = end[1];
+                if (end[0] < channel.size()) {
+                    logger.log(Level.WARNING, "Truncating torn journal record at " + end[0] + " in " + file);
+                    channel.truncate(end[0]);
+                }
+            }
+            channel.position(channel.size());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.channel = channel;
+        syncer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        return count;
+    }
+
+    void logProduct(Product product) throws IOException {
+        append(out -> {
+            out.writeByte((product instanceof Food) ? FOOD : DRINK);
+            out.writeInt(product.getId());
+            SnapshotCodec.writeString(out, product.getName());
+            writeDecimal(out, product.getPrice());
+            out.writeByte(product.getRating().ordinal());
+            if (product instanceof Food) {
+                out.writeLong(product.getBestBefore().toEpochDay());
+            }
+        });
+    }
+
+    void logReview(int id, Review review) throws IOException {
+        append(out -> {
+            out.writeByte(REVIEW);
+            out.writeInt(id);
+            out.writeByte(review.getRating().ordinal());
+            SnapshotCodec.writeString(out, review.getComments());
+        });
+    }
+
+    /**
+     * Returns the position after the records written so far, taken while
+     * no records are being written, before capturing a snapshot
+     */
+    Mark mark() throws IOException {
+        try {
+            lock.lock();
+            ensureOpen();
+            return new Mark(next, channel.position());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards records written before the mark, used once their effects are
+     * persisted in a snapshot. Records written since are copied into a new
+     * file, which replaces the journal atomically.
+     */
+    void checkpoint(Mark mark) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            lock.lock();
+            ensureOpen();
+            long end = channel.position();
+            if (mark.position > end) {
+                throw new IOException("Journal mark " + mark.position + " is beyond the end " + end);
+            }
+            try (FileChannel copy = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeHeader(copy, mark.sequence);
+                for (long position = mark.position; position < end; ) {
+                    position += channel.transferTo(position, end - position, copy);
+                }
+                copy.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            FileChannel previous = channel;
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            previous.close();
+            synced.set(written.get());
+        } finally {
+            lock.unlock();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Forces pending records to disk
+     */
+    void sync() {
+        long target = written.get();
+        if (synced.get() >= target) {
+            return;
+        }
+        try {
+            FileChannel channel = this.channel;
+            if (channel != null) {
+                channel.force(false);
+                synced.accumulateAndGet(target, Math::max);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error syncing journal " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        try {
+            lock.lock();
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(RecordWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        writer.write(new DataOutputStream(bytes));
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES * 2 + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        long pending;
+        try {
+            lock.lock();
+            ensureOpen();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            next++;
+            pending = written.incrementAndGet() - synced.get();
+        } finally {
+            lock.unlock();
+        }
+        if (pending >= syncRecords) {
+            syncer.execute(this::sync);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("Journal " + file + " is not open");
+        }
+    }
+
+    /*
+     * Replays records numbered from the given one, returns their count,
+     * the end of complete records and the number of the next record
+     */
+    private long replay(FileChannel channel, Replay replay, long from, long[] end) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+        int version = (in.readInt() == MAGIC) ? in.readInt() : -1;
+        if (version != VERSION && version != VERSION_1) {
+            throw new IOException("Journal " + file + " has unsupported format");
+        }
+        long sequence = (version == VERSION) ? in.readLong() : 0;
+        if (sequence > from) {
+            logger.log(Level.WARNING, "Journal " + file + " starts at record " + sequence
+                    + ", records from " + from + " are missing");
+        }
+        long position = headerSize(version);
+        long count = 0;
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        while (true) {
+            int length;
+            int checksum;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || length > channel.size() - position) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                in.readFully(payload, 0, length);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (sequence >= from) {
+                apply(new DataInputStream(new ByteArrayInputStream(payload, 0, length)), replay);
+                count++;
+            }
+            position += Integer.BYTES * 2 + length;
+            sequence++;
+        }
+        end[0] = position;
+        end[1] = sequence;
+        return count;
+    }
+
+    private static void apply(DataInputStream in, Replay replay) throws IOException {
+        byte type = in.readByte();
+        int id = in.readInt();
+        switch (type) {
+            case DRINK_UTF:
+            case FOOD_UTF:
+            case DRINK:
+            case FOOD:
+                String name = (type == DRINK || type == FOOD) ? SnapshotCodec.readString(in, new byte[0]) : in.readUTF();
+                BigDecimal price = readDecimal(in);
+                Rating rating = Rateable.convert(in.readByte());
+                replay.product((type == FOOD || type == FOOD_UTF)
+                        ? new Food(id, name, price, rating, LocalDate.ofEpochDay(in.readLong()))
+                        : new Drink(id, name, price, rating));
+                break;
+            case REVIEW_UTF:
+                replay.review(id, new Review(Rateable.convert(in.readByte()), in.readUTF()));
+                break;
+            case REVIEW:
+                Rating stars = Rateable.convert(in.readByte());
+                replay.review(id, new Review(stars, SnapshotCodec.readString(in, new byte[0])));
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static long headerSize(int version) {
+        return Integer.BYTES * 2 + ((version == VERSION) ? Long.BYTES : 0);
+    }
+
+    private static void writeHeader(FileChannel channel, long sequence) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate((int) headerSize(VERSION))
+                .putInt(MAGIC).putInt(VERSION).putLong(sequence).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeByte(unscaled.length);
+        out.write(unscaled);
+    }
+
+    static BigDecimal readDecimal(DataInput in) throws IOException {
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedByte()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * {@code LazyReviews} pages reviews of products in from their review files
+ * on first access and pages them out again under a memory budget
+ * <br>
+ * Entries holding reviews read from files are tracked in access order
+ * together with the estimated size of those reviews. Once the total exceeds
+ * the budget, least recently accessed entries drop the reviews read from
+ * their files, keeping their rating aggregates and the reviews added since,
+ * which are not in the files. Instances are thread-safe.
+ */
+class LazyReviews {
+    private final IntFunction<List<Review>> loader;
+    private final long budget;
+    private final Lock lock = new ReentrantLock();
+    private final LinkedHashMap<ProductEntry, Long> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final LongAdder pagedIn = new LongAdder();
+    private final LongAdder pagedOut = new LongAdder();
+
+    /**
+     * @param loader reads reviews of a product id from its file, returns
+     *               {@code null} if the file cannot be read
+     * @param budget estimated bytes of paged in reviews to keep
+     */
+    LazyReviews(IntFunction<List<Review>> loader, long budget) {
+        this.loader = loader;
+        this.budget = budget;
+    }
+
+    /**
+     * Reads reviews stored in the file of a product
+     */
+    List<Review> load(int id) {
+        pagedIn.increment();
+        List<Review> reviews = loader.apply(id);
+        return (reviews != null) ? reviews : List.of();
+    }
+
+    /**
+     * Records an access to the reviews of an entry, called without the entry locked
+     * @param entryBytes estimated size of reviews the entry has just paged in,
+     *                   or zero if it did not page in any
+     */
+    void accessed(ProductEntry entry, long entryBytes) {
+        List<ProductEntry> victims = new ArrayList<>();
+        try {
+            lock.lock();
+            if (entryBytes == 0) {
+                loaded.get(entry);
+                return;
+            }
+            Long previous = loaded.put(entry, entryBytes);
+            bytes += entryBytes - ((previous != null) ? previous : 0);
+            Iterator<Map.Entry<ProductEntry, Long>> eldest = loaded.entrySet().iterator();
+            while (bytes > budget && eldest.hasNext()) {
+                Map.Entry<ProductEntry, Long> victim = eldest.next();
+                if (victim.getKey() == entry) {
+                    break;
+                }
+                bytes -= victim.getValue();
+                eldest.remove();
+                victims.add(victim.getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+        victims.forEach(ProductEntry::pageOut);
+        pagedOut.add(victims.size());
+    }
+
+    long getBytes() {
+        try {
+            lock.lock();
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getPagedIn() {
+        return pagedIn.sum();
+    }
+
+    long getPagedOut() {
+        return pagedOut.sum();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@code LoadProgress} tracks loading of product files from the data folder
+ * and logs progress every tenth of the files together with throughput
+ * <br>
+ * Instances are thread-safe and may be shared by parallel loader tasks.
+ */
+class LoadProgress {
+    private static final Logger logger = Logger.getLogger(LoadProgress.class.getName());
+    private final int total;
+    private final int step;
+    private final long start = System.nanoTime();
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicLong reviews = new AtomicLong();
+
+    LoadProgress(int total) {
+        this.total = total;
+        this.step = Math.max(1, total / 10);
+    }
+
+    void loaded(int reviewCount) {
+        reviews.addAndGet(reviewCount);
+        report(files.incrementAndGet());
+    }
+
+    void failed() {
+        failures.incrementAndGet();
+        report(files.incrementAndGet());
+    }
+
+    int getFiles() {
+        return files.get();
+    }
+
+    int getFailures() {
+        return failures.get();
+    }
+
+    long getReviews() {
+        return reviews.get();
+    }
+
+    private void report(int done) {
+        if (done % step == 0 && done < total) {
+            logger.log(Level.INFO, "Loaded " + done + " of " + total + " product files, " + throughput());
+        }
+    }
+
+    void finish(int threads) {
+        logger.log(Level.INFO, "Loaded " + (files.get() - failures.get()) + " products, "
+                + reviews.get() + " reviews, " + failures.get() + " failed files using "
+                + threads + " thread(s), " + throughput());
+    }
+
+    private String throughput() {
+        double seconds = Math.max(System.nanoTime() - start, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format("%.0f files/s, %.0f reviews/s", files.get() / seconds, reviews.get() / seconds);
+    }
+}
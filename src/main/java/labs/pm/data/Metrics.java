@@ -0,0 +1,318 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+
+/**
+ * {@code Metrics} collects counters, latency histograms and gauges
+ * of a {@link ProductManager}
+ * <br>
+ * Latencies are recorded into histograms striped by thread id, so
+ * threads rarely contend on recording, and added together to report.
+ * Gauges are read only when metrics are reported. A manager without
+ * metrics enabled has no {@code Metrics} instance and pays a null check.
+ */
+class Metrics implements MetricsMXBean {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    enum Timer {
+        CREATE_PRODUCT("createProduct"),
+        REVIEW_PRODUCT("reviewProduct"),
+        REVIEW_PRODUCTS("reviewProducts"),
+        CONVERT_REVIEW_FILES("convertReviewFiles"),
+        FIND_PRODUCT("findProduct"),
+        FIND_PRODUCTS("findProducts"),
+        LIST_PRODUCTS("listProducts"),
+        PRINT_PRODUCTS("printProducts"),
+        PRINT_PRODUCT_REPORT("printProductReport"),
+        PRINT_PRODUCT_REPORT_ASYNC("printProductReportAsync"),
+        WRITE_REPORT("writeReport"),
+        GET_DISCOUNTS("getDiscounts"),
+        GET_REPORT_CACHE_STATS("getReportCacheStats"),
+        LOAD_DATA("loadData"),
+        DUMP_DATA("dumpData"),
+        RESTORE_DATA("restoreData"),
+        READ_LOCK_WAIT("lock.read.wait"),
+        READ_LOCK_HOLD("lock.read.hold"),
+        WRITE_LOCK_WAIT("lock.write.wait"),
+        WRITE_LOCK_HOLD("lock.write.hold");
+
+        private final String name;
+
+        Timer(String name) {
+            this.name = name;
+        }
+    }
+
+    enum Counter {
+        BYTES_READ("io.bytes.read"),
+        BYTES_WRITTEN("io.bytes.written"),
+        FILES_LOADED("load.files"),
+        FILES_FAILED("load.files.failed"),
+        REVIEWS_LOADED("load.reviews"),
+        LOAD_NANOS("load.nanos"),
+        REPORTS_WRITTEN("reports.written");
+
+        private final String name;
+
+        Counter(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    Metrics() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = Math.min(Integer.highestOneBit(Math.max(processors, 1) * 2 - 1), 8);
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        gauge("load.files.per.second", () -> perSecond(Counter.FILES_LOADED));
+        gauge("load.reviews.per.second", () -> perSecond(Counter.REVIEWS_LOADED));
+        gauge("load.bytes.per.second", () -> perSecond(Counter.BYTES_READ));
+    }
+
+    void record(Timer timer, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        try {
+            stripe.lock.lock();
+            stripe.histograms[timer.ordinal()].record(elapsed);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    void add(Counter counter, long value) {
+        counters[counter.ordinal()].add(value);
+    }
+
+    void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Wraps a lock to record how long threads wait to acquire it and how
+     * long they hold it, hold time is measured from the outermost lock
+     * to the matching unlock of a thread
+     */
+    Lock timed(Lock lock, boolean write) {
+        return new TimedLock(lock,
+                write ? Timer.WRITE_LOCK_WAIT : Timer.READ_LOCK_WAIT,
+                write ? Timer.WRITE_LOCK_HOLD : Timer.READ_LOCK_HOLD);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Counter counter : Counter.values()) {
+            result.put(counter.name, counters[counter.ordinal()].sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getGauges() {
+        Map<String, Double> result = new TreeMap<>();
+        gauges.forEach((name, value) -> result.put(name, value.getAsDouble()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getLatencies() {
+        Map<String, Long> result = new TreeMap<>();
+        LatencyHistogram[] histograms = snapshot();
+        for (Timer timer : Timer.values()) {
+            LatencyHistogram histogram = histograms[timer.ordinal()];
+            result.put(timer.name + ".count", histogram.getCount());
+            result.put(timer.name + ".mean", micros(Math.round(histogram.getMean())));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                result.put(timer.name + "." + PERCENTILE_NAMES[i], micros(histogram.getValueAtPercentile(PERCENTILES[i])));
+            }
+            result.put(timer.name + ".max", micros(histogram.getMax()));
+        }
+        return result;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder txt = new StringBuilder("Metrics").append(System.lineSeparator());
+        getCounters().forEach((name, value) -> txt.append(String.format("  %-32s %,d%n", name, value)));
+        getGauges().forEach((name, value) -> txt.append(String.format("  %-32s %,.2f%n", name, value)));
+        txt.append(String.format("  %-32s %10s %10s %10s %10s %10s %10s%n",
+                "latency (us)", "count", "p50", "p90", "p99", "p99.9", "max"));
+        LatencyHistogram[] histograms = snapshot();
+        for (Timer timer : Timer.values()) {
+            LatencyHistogram histogram = histograms[timer.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            txt.append(String.format("  %-32s %10d", timer.name, histogram.getCount()));
+            for (double percentile : PERCENTILES) {
+                txt.append(String.format(" %10d", micros(histogram.getValueAtPercentile(percentile))));
+            }
+            txt.append(String.format(" %10d%n", micros(histogram.getMax())));
+        }
+        return txt.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (Stripe stripe : stripes) {
+            try {
+                stripe.lock.lock();
+                for (LatencyHistogram histogram : stripe.histograms) {
+                    histogram.reset();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+    }
+
+    private LatencyHistogram[] snapshot() {
+        LatencyHistogram[] result = Stripe.histograms();
+        for (Stripe stripe : stripes) {
+            try {
+                stripe.lock.lock();
+                for (int i = 0; i < result.length; i++) {
+                    result[i].add(stripe.histograms[i]);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    private double perSecond(Counter counter) {
+        long nanos = counters[Counter.LOAD_NANOS.ordinal()].sum();
+        return (nanos > 0) ? counters[counter.ordinal()].sum() * (double) TimeUnit.SECONDS.toNanos(1) / nanos : 0;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static final class Stripe {
+        // not a monitor, so that a virtual thread waiting for it does not pin its carrier
+        private final Lock lock = new ReentrantLock();
+        private final LatencyHistogram[] histograms = histograms();
+
+        private static LatencyHistogram[] histograms() {
+            LatencyHistogram[] histograms = new LatencyHistogram[Timer.values().length];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+            return histograms;
+        }
+    }
+
+    private final class TimedLock implements Lock {
+        private final Lock lock;
+        private final Timer wait;
+        private final Timer hold;
+        // per thread hold depth and time of the outermost acquisition
+        private final ThreadLocal<long[]> held = ThreadLocal.withInitial(() -> new long[2]);
+
+        private TimedLock(Lock lock, Timer wait, Timer hold) {
+            this.lock = lock;
+            this.wait = wait;
+            this.hold = hold;
+        }
+
+        @Override
+        public void lock() {
+            long start = System.nanoTime();
+            lock.lock();
+            acquired(start);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            long start = System.nanoTime();
+            lock.lockInterruptibly();
+            acquired(start);
+        }
+
+        @Override
+        public boolean tryLock() {
+            long start = System.nanoTime();
+            if (!lock.tryLock()) {
+                return false;
+            }
+            acquired(start);
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long start = System.nanoTime();
+            if (!lock.tryLock(time, unit)) {
+                return false;
+            }
+            acquired(start);
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            long[] state = held.get();
+            lock.unlock();
+            if (--state[0] == 0) {
+                record(hold, state[1]);
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            return lock.newCondition();
+        }
+
+        private void acquired(long start) {
+            record(wait, start);
+            long[] state = held.get();
+            if (state[0]++ == 0) {
+                state[1] = System.nanoTime();
+            }
+        }
+    }
+}
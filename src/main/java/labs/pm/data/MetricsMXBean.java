@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.Map;
+
+/**
+ * {@code MetricsMXBean} exposes operation metrics of a {@link ProductManager}
+ * registered with the platform MBean server when {@code metrics.enabled=true}
+ * <br>
+ * Each manager is registered as {@code labs.pm:type=ProductManager,name=<n>},
+ * numbered from 1 in order of creation, so the first one is {@code name=1}.
+ * <br>
+ * Latencies are reported in microseconds as {@code <name>.count}, {@code .mean},
+ * {@code .p50}, {@code .p90}, {@code .p99}, {@code .p999} and {@code .max} entries.
+ */
+public interface MetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Double> getGauges();
+
+    Map<String, Long> getLatencies();
+
+    /**
+     * @return all metrics formatted as text, one per line
+     */
+    String getReport();
+
+    /**
+     * Clears counters and latencies, gauges are not affected
+     */
+    void reset();
+}
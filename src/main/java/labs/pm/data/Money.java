@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * {@code Money} converts amounts of money between
+ * {@link java.math.BigDecimal BigDecimal} values used by the public API
+ * and {@code long} values in minor units (cents) used internally
+ * <br>
+ * Arithmetic on minor units does not allocate and is exact,
+ * amounts are rounded to cents half up as with {@code BigDecimal}.
+ */
+final class Money {
+    static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    static long of(BigDecimal amount) {
+        return of(amount, RoundingMode.HALF_UP);
+    }
+
+    static long of(BigDecimal amount, RoundingMode rounding) {
+        return amount.setScale(SCALE, rounding).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal toBigDecimal(long amount) {
+        return BigDecimal.valueOf(amount, SCALE);
+    }
+
+    /**
+     * Multiplies the amount by a rate of {@code numerator / denominator}
+     * @return the result rounded half up to minor units
+     */
+    static long multiply(long amount, long numerator, long denominator) {
+        long product = Math.multiplyExact(amount, numerator);
+        long result = product / denominator;
+        if (Math.abs(product % denominator) * 2 >= denominator) {
+            result += Long.signum(product);
+        }
+        return result;
+    }
+}
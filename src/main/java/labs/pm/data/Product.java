@@ -22,7 +22,7 @@ package labs.pm.data;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.math.BigInteger;
 import java.time.LocalDate;
 import java.util.Objects;
 
@@ -47,9 +47,12 @@ public abstract class Product implements Rateable<Product>, Serializable {
      * <br>
      */
     public static final BigDecimal DISCOUNT_RATE = BigDecimal.valueOf(0.1);
+    private static final long DISCOUNT_NUMERATOR = DISCOUNT_RATE.unscaledValue().longValueExact();
+    private static final long DISCOUNT_DENOMINATOR = BigInteger.TEN.pow(DISCOUNT_RATE.scale()).longValueExact();
     private int id;
     private String name;
-    private BigDecimal price;
+    // price in cents, see Money
+    private long price;
     private final Rating rating;
 
     Product() {
@@ -60,6 +63,10 @@ public abstract class Product implements Rateable<Product>, Serializable {
         this(id, name, price, Rating.NOT_RATED);
     }
     Product(int id, String name, BigDecimal price, Rating rating) {
+        this(id, name, Money.of(price), rating);
+    }
+
+    Product(int id, String name, long price, Rating rating) {
         this.id = id;
         this.name = name;
         this.price = price;
@@ -92,6 +99,10 @@ public abstract class Product implements Rateable<Product>, Serializable {
 //    }
 
     public BigDecimal getPrice() {
+        return Money.toBigDecimal(getPriceCents());
+    }
+
+    long getPriceCents() {
         return price;
     }
 
@@ -106,18 +117,32 @@ public abstract class Product implements Rateable<Product>, Serializable {
      * value of the discount
      */
     public BigDecimal getDiscount(){
-        return price.multiply(DISCOUNT_RATE).setScale(2, RoundingMode.HALF_UP);
+        return Money.toBigDecimal(getDiscountCents());
+    }
+
+    /**
+     * Calculates discount in cents, subclasses decide when it applies
+     */
+    long getDiscountCents() {
+        return getFullDiscountCents();
+    }
+
+    /**
+     * Calculates discount in cents regardless of when it applies
+     */
+    final long getFullDiscountCents() {
+        return Money.multiply(getPriceCents(), DISCOUNT_NUMERATOR, DISCOUNT_DENOMINATOR);
     }
 
 //    public abstract Product applyRating (Rating newRating);
 
     @Override
     public String toString() {
-        return  "id=" + id +
-                ", name='" + name + '\'' +
-                ", price=" + price +
+        return  "id=" + getId() +
+                ", name='" + getName() + '\'' +
+                ", price=" + getPrice() +
                 ", discount=" + getDiscount() +
-                ", rating=" + rating.getStars() +
+                ", rating=" + getRating().getStars() +
                 " " + getBestBefore();
     }
 
@@ -129,7 +154,7 @@ public abstract class Product implements Rateable<Product>, Serializable {
 //        if (o == null || getClass() != o.getClass()) return false;
         if (o instanceof Product) {
             Product product = (Product) o;
-            return this.id == product.id; // && name.equals(product.name);
+            return this.getId() == product.getId(); // && name.equals(product.name);
         }
         return false;
     }
@@ -138,6 +163,6 @@ public abstract class Product implements Rateable<Product>, Serializable {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Objects.hash(getId());
     }
 }
\ No newline at end of file
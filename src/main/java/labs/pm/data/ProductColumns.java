@@ -0,0 +1,358 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.io.ObjectStreamException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * {@code ProductColumns} keeps product properties outside of the heap,
+ * one direct buffer per property indexed by row, and hands out
+ * {@link Product} views reading them
+ * <br>
+ * Names are stored once each in a dictionary of UTF-8 bytes, rows
+ * refer to names by their number in the dictionary.
+ * <br>
+ * Rows are added under the store write lock, or before the columns are
+ * published. Ratings are changed under the lock of the product entry and
+ * read without locking, so they are accessed with release/acquire semantics.
+ * A view holds the rating read when it was created, so like other
+ * products it does not change once obtained.
+ */
+final class ProductColumns {
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final Rating[] RATINGS = Rating.values();
+    private static final byte DRINK = 'D';
+    private static final byte FOOD = 'F';
+
+    private final Names names = new Names();
+    private volatile Columns columns;
+    private int size;
+
+    ProductColumns(int expectedSize) {
+        columns = new Columns(Math.max(expectedSize, 16));
+    }
+
+    /**
+     * Adds a row with properties of the product
+     * @return the row number
+     */
+    int add(Product product) {
+        int row = size;
+        Columns columns = this.columns;
+        if (row == columns.capacity) {
+            columns = columns.grow(row + (row >> 1));
+            this.columns = columns;
+        }
+        columns.ids.putInt(row * Integer.BYTES, product.getId());
+        columns.prices.putLong(row * Long.BYTES, product.getPriceCents());
+        columns.names.putInt(row * Integer.BYTES, names.add(product.getName()));
+        if (product instanceof Food) {
+            columns.types.put(row, FOOD);
+            columns.bestBefore.putInt(row * Integer.BYTES, (int) product.getBestBefore().toEpochDay());
+        } else {
+            columns.types.put(row, DRINK);
+        }
+        INTS.setRelease(columns.ratings, row * Integer.BYTES, product.getRating().ordinal());
+        size = row + 1;
+        return row;
+    }
+
+    Product get(int row) {
+        Rating rating = RATINGS[(int) INTS.getAcquire(columns.ratings, row * Integer.BYTES)];
+        return (columns.types.get(row) == FOOD) ? new FoodView(this, row, rating) : new DrinkView(this, row, rating);
+    }
+
+    void setRating(int row, Rating rating) {
+        INTS.setRelease(columns.ratings, row * Integer.BYTES, rating.ordinal());
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return bytes allocated outside of the heap
+     */
+    long offHeapBytes() {
+        return columns.bytes() + names.bytes();
+    }
+
+    private int id(int row) {
+        return columns.ids.getInt(row * Integer.BYTES);
+    }
+
+    private String name(int row) {
+        return names.get(columns.names.getInt(row * Integer.BYTES));
+    }
+
+    private long price(int row) {
+        return columns.prices.getLong(row * Long.BYTES);
+    }
+
+    private LocalDate bestBefore(int row) {
+        return LocalDate.ofEpochDay(columns.bestBefore.getInt(row * Integer.BYTES));
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int bytes) {
+        ByteBuffer grown = allocate(bytes);
+        grown.put(buffer.duplicate().clear());
+        return grown.clear();
+    }
+
+    private static final class Columns {
+        private final int capacity;
+        private final ByteBuffer ids;
+        private final ByteBuffer prices;
+        private final ByteBuffer ratings;
+        private final ByteBuffer bestBefore;
+        private final ByteBuffer types;
+        private final ByteBuffer names;
+
+        private Columns(int capacity) {
+            this(capacity, allocate(capacity * Integer.BYTES), allocate(capacity * Long.BYTES),
+                    allocate(capacity * Integer.BYTES), allocate(capacity * Integer.BYTES),
+                    allocate(capacity), allocate(capacity * Integer.BYTES));
+        }
+
+        private Columns(int capacity, ByteBuffer ids, ByteBuffer prices, ByteBuffer ratings,
+                        ByteBuffer bestBefore, ByteBuffer types, ByteBuffer names) {
+            this.capacity = capacity;
+            this.ids = ids;
+            this.prices = prices;
+            this.ratings = ratings;
+            this.bestBefore = bestBefore;
+            this.types = types;
+            this.names = names;
+        }
+
+        private Columns grow(int capacity) {
+            return new Columns(capacity, ProductColumns.grow(ids, capacity * Integer.BYTES),
+                    ProductColumns.grow(prices, capacity * Long.BYTES),
+                    ProductColumns.grow(ratings, capacity * Integer.BYTES),
+                    ProductColumns.grow(bestBefore, capacity * Integer.BYTES),
+                    ProductColumns.grow(types, capacity),
+                    ProductColumns.grow(names, capacity * Integer.BYTES));
+        }
+
+        private long bytes() {
+            return (long) capacity * (4 * Integer.BYTES + Long.BYTES + 1);
+        }
+    }
+
+    /*
+     * Dictionary of names kept as UTF-8 bytes, each name is added once and
+     * found again through an open addressing table of name numbers hashed
+     * by their bytes, the table is the only part kept in the heap.
+     */
+    private static final class Names {
+        // replaced when growing, views may read names without locking
+        private volatile ByteBuffer bytes = allocate(4096);
+        private volatile ByteBuffer entries = allocate(64 * 2 * Integer.BYTES);
+        private int[] table = new int[128];
+        private int count;
+        private int length;
+
+        int add(String name) {
+            if (name == null) {
+                return -1;
+            }
+            byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+            int mask = table.length - 1;
+            int slot = hash(utf8) & mask;
+            for (int number = table[slot] - 1; number >= 0; number = table[slot] - 1) {
+                if (matches(number, utf8)) {
+                    return number;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (length + utf8.length > bytes.capacity()) {
+                bytes = grow(bytes, Math.max(length + utf8.length, bytes.capacity() * 2));
+            }
+            if ((count + 1) * 2 * Integer.BYTES > entries.capacity()) {
+                entries = grow(entries, entries.capacity() * 2);
+            }
+            ByteBuffer target = bytes.duplicate();
+            target.position(length);
+            target.put(utf8);
+            entries.putInt(count * 2 * Integer.BYTES, length);
+            entries.putInt(count * 2 * Integer.BYTES + Integer.BYTES, utf8.length);
+            length += utf8.length;
+            table[slot] = ++count;
+            if (count * 2 > table.length) {
+                rehash();
+            }
+            return count - 1;
+        }
+
+        String get(int number) {
+            if (number < 0) {
+                return null;
+            }
+            ByteBuffer entries = this.entries;
+            byte[] utf8 = new byte[entries.getInt(number * 2 * Integer.BYTES + Integer.BYTES)];
+            ByteBuffer source = bytes.duplicate();
+            source.position(entries.getInt(number * 2 * Integer.BYTES));
+            source.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        long bytes() {
+            return bytes.capacity() + entries.capacity();
+        }
+
+        private boolean matches(int number, byte[] utf8) {
+            int offset = entries.getInt(number * 2 * Integer.BYTES);
+            if (entries.getInt(number * 2 * Integer.BYTES + Integer.BYTES) != utf8.length) {
+                return false;
+            }
+            for (int i = 0; i < utf8.length; i++) {
+                if (bytes.get(offset + i) != utf8[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int hash(int number) {
+            int offset = entries.getInt(number * 2 * Integer.BYTES);
+            int size = entries.getInt(number * 2 * Integer.BYTES + Integer.BYTES);
+            int hash = 1;
+            for (int i = 0; i < size; i++) {
+                hash = 31 * hash + bytes.get(offset + i);
+            }
+            return mix(hash);
+        }
+
+        private static int hash(byte[] utf8) {
+            int hash = 1;
+            for (int i = 0; i < utf8.length; i++) {
+                hash = 31 * hash + utf8[i];
+            }
+            return mix(hash);
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private void rehash() {
+            int[] rehashed = new int[table.length * 2];
+            int mask = rehashed.length - 1;
+            for (int number = 0; number < count; number++) {
+                int slot = hash(number) & mask;
+                while (rehashed[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                rehashed[slot] = number + 1;
+            }
+            table = rehashed;
+        }
+    }
+
+    private static final class DrinkView extends Drink {
+        private static final long serialVersionUID = 1L;
+
+        private final ProductColumns store;
+        private final int row;
+
+        private DrinkView(ProductColumns store, int row, Rating rating) {
+            super(0, null, 0L, rating);
+            this.store = store;
+            this.row = row;
+        }
+
+        @Override
+        public int getId() {
+            return store.id(row);
+        }
+
+        @Override
+        public String getName() {
+            return store.name(row);
+        }
+
+        @Override
+        long getPriceCents() {
+            return store.price(row);
+        }
+
+        @Override
+        public Product applyRating(Rating newRating) {
+            return new DrinkView(store, row, newRating);
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            return new Drink(getId(), getName(), getPriceCents(), getRating());
+        }
+    }
+
+    private static final class FoodView extends Food {
+        private static final long serialVersionUID = 1L;
+
+        private final ProductColumns store;
+        private final int row;
+
+        private FoodView(ProductColumns store, int row, Rating rating) {
+            super(0, null, 0L, rating, null);
+            this.store = store;
+            this.row = row;
+        }
+
+        @Override
+        public int getId() {
+            return store.id(row);
+        }
+
+        @Override
+        public String getName() {
+            return store.name(row);
+        }
+
+        @Override
+        long getPriceCents() {
+            return store.price(row);
+        }
+
+        @Override
+        public LocalDate getBestBefore() {
+            return store.bestBefore(row);
+        }
+
+        @Override
+        public Product applyRating(Rating newRating) {
+            return new FoodView(store, row, newRating);
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            return new Food(getId(), getName(), getPriceCents(), getRating(), getBestBefore());
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code ProductEntry} holds the current state of a single product
+ * in the {@link ProductManager} store together with its reviews
+ * <br>
+ * Each entry is guarded by its own lock, so reviews of different
+ * products do not contend with each other. The current product is
+ * published through a volatile field and can be read without locking.
+ * <br>
+ * Reviews are kept in an append-only {@link ReviewArray}: slots below the
+ * published review count never change, so a list of the reviews at a point
+ * in time is captured in O(1) without copying. Comments repeated across
+ * the store share one instance.
+ * <br>
+ * With {@link LazyReviews} reviews stored in the product review file are
+ * read on first access and may be paged out again, the rating aggregate
+ * and reviews added since are always kept.
+ */
+class ProductEntry {
+    private static final CommentInterner comments = new CommentInterner(1 << 16);
+    private final Lock lock = new ReentrantLock();
+    private RatingStats stats;
+    private volatile ReviewArray reviews;
+    private volatile int reviewCount;
+    private volatile Product product;
+    // reviews are paged in from the review file with a source only
+    private final LazyReviews source;
+    // number of reviews read from the file, dropped from the array while paged out
+    private int stored;
+    private boolean pagedOut;
+
+    ProductEntry(Product product) {
+        this(product, null);
+    }
+
+    ProductEntry(Product product, List<Review> reviews) {
+        this(product, reviews, null);
+    }
+
+    /**
+     * @param stats previously persisted rating aggregate of the reviews,
+     *              recalculated from reviews when {@code null}
+     */
+    ProductEntry(Product product, List<Review> reviews, RatingStats stats) {
+        this(product, reviews, stats, null);
+    }
+
+    /**
+     * @param source pages in reviews from the product review file on first
+     *               access, {@code reviews} and {@code stats} are ignored with a source
+     */
+    ProductEntry(Product product, List<Review> reviews, RatingStats stats, LazyReviews source) {
+        this.product = product;
+        this.source = source;
+        if (source != null) {
+            this.reviews = ReviewArray.EMPTY;
+            return;
+        }
+        int count = (reviews != null) ? reviews.size() : 0;
+        ReviewArray array = (count > 0) ? new ReviewArray(count) : ReviewArray.EMPTY;
+        for (int i = 0; i < count; i++) {
+            array.set(i, reviews.get(i), comments);
+        }
+        this.reviews = array;
+        this.reviewCount = count;
+        this.stats = (stats != null) ? stats : RatingStats.of(array.view(count));
+    }
+
+    Product getProduct() {
+        return product;
+    }
+
+    /**
+     * Replaces the product, called with the entry locked
+     */
+    void setProduct(Product product) {
+        this.product = product;
+    }
+
+    /**
+     * A product and its reviews captured at the same point in time,
+     * so the product rating matches the reviews
+     */
+    static final class State {
+        private final Product product;
+        private final List<Review> reviews;
+
+        private State(Product product, List<Review> reviews) {
+            this.product = product;
+            this.reviews = reviews;
+        }
+
+        Product getProduct() {
+            return product;
+        }
+
+        /**
+         * @return an unmodifiable {@link java.util.List List} of reviews
+         */
+        List<Review> getReviews() {
+            return reviews;
+        }
+    }
+
+    /**
+     * Captures the product together with its reviews, a review added
+     * meanwhile is either reflected in both or in neither
+     */
+    State capture() {
+        long bytes;
+        State state;
+        try {
+            lock.lock();
+            bytes = pageIn();
+            state = new State(getProduct(), reviews.view(reviewCount));
+        } finally {
+            lock.unlock();
+        }
+        if (source != null) {
+            source.accessed(this, bytes);
+        }
+        return state;
+    }
+
+    /*
+     * Reads reviews of the review file in front of reviews added since,
+     * called with the entry locked.
+     * Returns estimated bytes of the reviews read, zero if none were.
+     */
+    private long pageIn() {
+        if (source == null || (stats != null && !pagedOut)) {
+            return 0;
+        }
+        List<Review> loaded = source.load(getProduct().getId());
+        int tail = reviewCount;
+        ReviewArray array = new ReviewArray(loaded.size() + tail);
+        long bytes = 0;
+        for (int i = 0; i < loaded.size(); i++) {
+            Review review = loaded.get(i);
+            array.set(i, review, comments);
+            bytes += 48 + ((review.getComments() != null) ? review.getComments().length() : 0);
+        }
+        array.copy(reviews, 0, loaded.size(), tail);
+        if (stats == null) {
+            stats = RatingStats.of(loaded);
+        }
+        stored = loaded.size();
+        pagedOut = false;
+        reviews = array;
+        reviewCount = stored + tail;
+        return (stored > 0) ? bytes + 5L * array.capacity() : 0;
+    }
+
+    /**
+     * Drops reviews read from the review file, keeping reviews added since
+     */
+    void pageOut() {
+        try {
+            lock.lock();
+            if (pagedOut || stored == 0) {
+                return;
+            }
+            int tail = reviewCount - stored;
+            ReviewArray array = (tail > 0) ? new ReviewArray(tail) : ReviewArray.EMPTY;
+            array.copy(reviews, stored, 0, tail);
+            reviews = array;
+            reviewCount = tail;
+            pagedOut = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Returns all reviews without paging them in, called with the entry locked.
+     */
+    private List<Review> allReviews() {
+        if (source == null || (stats != null && !pagedOut)) {
+            return reviews.view(reviewCount);
+        }
+        List<Review> all = new ArrayList<>(source.load(getProduct().getId()));
+        all.addAll(reviews.view(reviewCount));
+        return all;
+    }
+
+    /**
+     * Captures the product, its reviews and rating aggregate,
+     * taken at the same point in time, into the given maps
+     * <br>
+     * Reviews of the review file that are not paged in are not read here,
+     * so the store can be locked while entries are captured.
+     * @return the captured product if reviews of its review file have to be
+     * added by {@link #copyStored(Product, Map, Map)}, otherwise {@code null}
+     */
+    Product copyTo(Map<Product, List<Review>> data, Map<Integer, RatingStats> ratingStats) {
+        try {
+            lock.lock();
+            Product product = getProduct();
+            data.put(product, reviews.view(reviewCount));
+            if (stats != null) {
+                ratingStats.put(product.getId(), new RatingStats(stats));
+            }
+            return (source != null && (stats == null || pagedOut)) ? product : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts reviews of the review file in front of the reviews captured
+     * by {@link #copyTo(Map, Map)}, without paging them in
+     */
+    void copyStored(Product product, Map<Product, List<Review>> data, Map<Integer, RatingStats> ratingStats) {
+        List<Review> all = new ArrayList<>(source.load(product.getId()));
+        all.addAll(data.get(product));
+        data.put(product, all);
+        ratingStats.putIfAbsent(product.getId(), RatingStats.of(all));
+    }
+
+    /**
+     * Pages in reviews of the review file if the rating aggregate
+     * has not been read yet, called before reviews are added so that
+     * the file is not read while the store is locked
+     */
+    void loadStats() {
+        if (source == null) {
+            return;
+        }
+        long bytes;
+        try {
+            lock.lock();
+            bytes = (stats == null) ? pageIn() : 0;
+        } finally {
+            lock.unlock();
+        }
+        if (bytes > 0) {
+            source.accessed(this, bytes);
+        }
+    }
+
+    /**
+     * Returns a copy of the rating aggregate
+     * @return a {@link RatingStats} of the product reviews
+     */
+    RatingStats getStats() {
+        try {
+            lock.lock();
+            return (stats != null) ? new RatingStats(stats) : RatingStats.of(allReviews());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds reviews and updates the product rating once for all of them
+     * @param index index of the store, updated while the entry is locked
+     * @return a product with the updated rating
+     */
+    Product addReviews(List<Review> batch, ProductIndex index) {
+        long bytes = 0;
+        Product product;
+        try {
+            lock.lock();
+            if (stats == null) {
+                bytes = pageIn();
+            }
+            ReviewArray array = reviews;
+            int count = reviewCount;
+            if (count + batch.size() > array.capacity()) {
+                array = array.grow(Math.max(count + batch.size(), count + (count >> 1)));
+                reviews = array;
+            }
+            for (Review review : batch) {
+                array.set(count++, review, comments);
+                stats.add(review.getRating());
+            }
+            reviewCount = count;
+            Product previous = getProduct();
+            product = previous.applyRating(stats.getRating());
+            index.ratingChanging(previous, product);
+            setProduct(product);
+            index.ratingChanged(previous, product);
+        } finally {
+            lock.unlock();
+        }
+        if (bytes > 0) {
+            source.accessed(this, bytes);
+        }
+        return product;
+    }
+
+    /**
+     * Adds a review and updates the product rating from the running aggregate
+     * @param index index of the store, updated while the entry is locked
+     * @return a product with the updated rating
+     */
+    Product addReview(Review review, ProductIndex index) {
+        long bytes = 0;
+        Product product;
+        try {
+            lock.lock();
+            if (stats == null) {
+                bytes = pageIn();
+            }
+            ReviewArray array = reviews;
+            int count = reviewCount;
+            if (count == array.capacity()) {
+                array = array.grow(Math.max(8, count + (count >> 1)));
+                reviews = array;
+            }
+            array.set(count, review, comments);
+            reviewCount = count + 1;
+            stats.add(review.getRating());
+            Product previous = getProduct();
+            product = previous.applyRating(stats.getRating());
+            index.ratingChanging(previous, product);
+            setProduct(product);
+            index.ratingChanged(previous, product);
+        } finally {
+            lock.unlock();
+        }
+        if (bytes > 0) {
+            source.accessed(this, bytes);
+        }
+        return product;
+    }
+}
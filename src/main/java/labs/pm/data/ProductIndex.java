@@ -0,0 +1,335 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * {@code ProductIndex} keeps products of the {@link ProductManager} store
+ * ordered by price, rating and best-before date and answers
+ * {@link ProductQuery} requests
+ * <br>
+ * Indexes hold product ids, products are resolved from the store and
+ * checked against the query, so a rating changed by a concurrent review
+ * is never reported out of its range. Ratings are updated under the lock
+ * of the reviewed product, other changes are made under the store write lock.
+ * The key of a new rating is added before the product is published and the
+ * key of the previous rating is removed after, so a product always has a key
+ * matching its current rating. Keys not matching it are skipped, and a product
+ * reached again through its new key within one walk is reported once, always
+ * in the position of the rating it is reported with. A product re-rated behind
+ * the position of a walk is not reported by that walk.
+ * <br>
+ * A query ordered by an indexed property walks that index in order and
+ * stops after the limit. Otherwise the products selected by the most
+ * selective range, or all products when there is none, are filtered first
+ * and only the matching ones are sorted, keeping the top {@code limit}.
+ * <br>
+ * Pages of a listing walk the index of the query order, or the narrowest
+ * range index or ids when the listing is not ordered, starting right after
+ * the key of the last listed product.
+ * <br>
+ * The index also maintains {@link DiscountTotals} of the indexed products.
+ */
+class ProductIndex {
+    private final NavigableSet<Key<Long>> prices = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key<Rating>> ratings = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key<LocalDate>> bestBefore = new ConcurrentSkipListSet<>();
+    private final NavigableSet<Key<Integer>> ids = new ConcurrentSkipListSet<>();
+    private final DiscountTotals discounts = new DiscountTotals();
+
+    void add(Product product) {
+        int id = product.getId();
+        ids.add(new Key<>(id, id));
+        prices.add(new Key<>(product.getPriceCents(), id));
+        ratings.add(new Key<>(product.getRating(), id));
+        if (product instanceof Food) {
+            bestBefore.add(new Key<>(product.getBestBefore(), id));
+        }
+        discounts.add(product);
+    }
+
+    /**
+     * Adds the key of the new rating, called before the product is published
+     */
+    void ratingChanging(Product before, Product after) {
+        if (before.getRating() != after.getRating()) {
+            ratings.add(new Key<>(after.getRating(), after.getId()));
+        }
+    }
+
+    /**
+     * Removes the key of the previous rating, called after the product is published
+     */
+    void ratingChanged(Product before, Product after) {
+        if (before.getRating() != after.getRating()) {
+            ratings.remove(new Key<>(before.getRating(), before.getId()));
+            discounts.ratingChanged(before, after);
+        }
+    }
+
+    DiscountTotals getDiscounts() {
+        return discounts;
+    }
+
+    List<Product> query(ProductQuery query, IntHashMap<ProductEntry> store) {
+        int limit = query.getLimit();
+        NavigableSet<? extends Key<?>> ordered = orderedIndex(query);
+        if (ordered != null) {
+            List<Product> result = new ArrayList<>(Math.min(limit, 64));
+            Set<Integer> seen = (query.getOrder() == ProductQuery.Order.RATING) ? new HashSet<>() : null;
+            for (Key<?> key : ordered) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                Product product = current(store, key);
+                if (product != null && query.test(product) && (seen == null || seen.add(key.id))) {
+                    result.add(product);
+                }
+            }
+            return result;
+        }
+        return top(select(query, store), query.comparator(), limit);
+    }
+
+    /**
+     * Selects products matching the query in no particular order
+     */
+    List<Product> select(ProductQuery query, IntHashMap<ProductEntry> store) {
+        List<Product> candidates = new ArrayList<>();
+        NavigableSet<? extends Key<?>> range = rangeIndex(query);
+        if (range != null) {
+            Set<Integer> seen = isRatingRange(query) ? new HashSet<>() : null;
+            for (Key<?> key : range) {
+                Product product = current(store, key);
+                if (product != null && query.test(product) && (seen == null || seen.add(key.id))) {
+                    candidates.add(product);
+                }
+            }
+        } else {
+            store.forEach(entry -> {
+                Product product = entry.getProduct();
+                if (query.test(product)) {
+                    candidates.add(product);
+                }
+            });
+        }
+        return candidates;
+    }
+
+    /**
+     * Checks whether pages of the query can be read from an index
+     */
+    boolean isPageable(ProductQuery query) {
+        ProductQuery.Order order = query.getOrder();
+        if (order != null) {
+            return order != ProductQuery.Order.BEST_BEFORE || query.hasBestBeforeRange();
+        }
+        return query.comparator() == null;
+    }
+
+    /**
+     * Reads the page of a pageable query following the cursor position
+     */
+    ProductPage page(ProductPage.Cursor cursor, int size, IntHashMap<ProductEntry> store) {
+        ProductQuery query = cursor.getQuery();
+        ProductQuery.Order order = query.getOrder();
+        boolean descending = order != null && query.isDescending();
+        if (order == ProductQuery.Order.PRICE || order == null && query.hasPriceRange()) {
+            return page(range(prices, query.getMinPrice(), query.getMaxPrice()), descending, cursor, size, store);
+        }
+        if (order == ProductQuery.Order.BEST_BEFORE || order == null && query.hasBestBeforeRange()) {
+            return page(range(bestBefore, query.getBestBeforeFrom(), query.getBestBeforeTo()), descending, cursor, size, store);
+        }
+        if (order == ProductQuery.Order.RATING || query.hasRatingRange()) {
+            return page(range(ratings, query.getMinRating(), query.getMaxRating()), descending, cursor, size, store);
+        }
+        return page(ids, false, cursor, size, store);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V extends Comparable<? super V>> ProductPage page(NavigableSet<Key<V>> index, boolean descending,
+                                                                      ProductPage.Cursor cursor, int size,
+                                                                      IntHashMap<ProductEntry> store) {
+        if (cursor.hasPosition()) {
+            Key<V> position = new Key<>((V) cursor.getValue(), cursor.getId());
+            index = descending ? index.headSet(position, false) : index.tailSet(position, false);
+        }
+        ProductQuery query = cursor.getQuery();
+        int limit = Math.min(size, cursor.getRemaining());
+        List<Product> products = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+        // the cursor only advances to keys matching the listed product
+        Key<V> last = null;
+        for (Key<V> key : descending ? index.descendingSet() : index) {
+            if (products.size() >= limit) {
+                break;
+            }
+            Product product = current(store, key);
+            if (product != null && query.test(product) && seen.add(key.id)) {
+                products.add(product);
+                last = key;
+            }
+        }
+        ProductPage.Cursor next = (products.size() == limit && cursor.getRemaining() > limit)
+                ? ProductPage.Cursor.after(cursor, last.value, last.id, limit) : null;
+        return new ProductPage(products, next);
+    }
+
+    /*
+     * Walking the order index pays off when the result is limited or when
+     * no other property narrows the selection.
+     */
+    private NavigableSet<? extends Key<?>> orderedIndex(ProductQuery query) {
+        ProductQuery.Order order = query.getOrder();
+        if (order == null) {
+            return null;
+        }
+        NavigableSet<? extends Key<?>> index;
+        boolean narrowedElsewhere;
+        switch (order) {
+            case PRICE:
+                index = range(prices, query.getMinPrice(), query.getMaxPrice());
+                narrowedElsewhere = query.hasRatingRange() || query.hasBestBeforeRange();
+                break;
+            case RATING:
+                index = range(ratings, query.getMinRating(), query.getMaxRating());
+                narrowedElsewhere = query.hasPriceRange() || query.hasBestBeforeRange();
+                break;
+            default:
+                if (!query.hasBestBeforeRange()) {
+                    // drinks are best before the current day and are not indexed
+                    return null;
+                }
+                index = range(bestBefore, query.getBestBeforeFrom(), query.getBestBeforeTo());
+                narrowedElsewhere = query.hasPriceRange() || query.hasRatingRange();
+        }
+        if (narrowedElsewhere && query.getLimit() == Integer.MAX_VALUE) {
+            return null;
+        }
+        return query.isDescending() ? index.descendingSet() : index;
+    }
+
+    /*
+     * Price and best-before ranges are usually narrower than rating ranges,
+     * which split all products into six groups only.
+     */
+    private NavigableSet<? extends Key<?>> rangeIndex(ProductQuery query) {
+        if (query.hasPriceRange()) {
+            return range(prices, query.getMinPrice(), query.getMaxPrice());
+        }
+        if (query.hasBestBeforeRange()) {
+            return range(bestBefore, query.getBestBeforeFrom(), query.getBestBeforeTo());
+        }
+        if (query.hasRatingRange()) {
+            return range(ratings, query.getMinRating(), query.getMaxRating());
+        }
+        return null;
+    }
+
+    private static <V extends Comparable<? super V>> NavigableSet<Key<V>> range(NavigableSet<Key<V>> index, V min, V max) {
+        if (min != null && max != null) {
+            if (min.compareTo(max) > 0) {
+                return Collections.emptyNavigableSet();
+            }
+            return index.subSet(new Key<>(min, Integer.MIN_VALUE), true, new Key<>(max, Integer.MAX_VALUE), true);
+        }
+        if (min != null) {
+            return index.tailSet(new Key<>(min, Integer.MIN_VALUE), true);
+        }
+        if (max != null) {
+            return index.headSet(new Key<>(max, Integer.MAX_VALUE), true);
+        }
+        return index;
+    }
+
+    /*
+     * Resolves the current product of a key, or null when the key is stale
+     */
+    private static Product current(IntHashMap<ProductEntry> store, Key<?> key) {
+        ProductEntry entry = store.get(key.id);
+        Product product = (entry != null) ? entry.getProduct() : null;
+        return (product != null && key.matches(product)) ? product : null;
+    }
+
+    private static boolean isRatingRange(ProductQuery query) {
+        return !query.hasPriceRange() && !query.hasBestBeforeRange() && query.hasRatingRange();
+    }
+
+    /*
+     * Keeps the first limit products in a bounded heap, so a top-K
+     * selection costs O(n log k) instead of sorting all matches.
+     */
+    static List<Product> top(List<Product> products, Comparator<Product> comparator, int limit) {
+        if (comparator == null) {
+            return (products.size() > limit) ? new ArrayList<>(products.subList(0, limit)) : products;
+        }
+        if (products.size() <= limit) {
+            products.sort(comparator);
+            return products;
+        }
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Product> heap = new PriorityQueue<>(limit + 1, comparator.reversed());
+        for (Product product : products) {
+            heap.offer(product);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Product> result = new ArrayList<>(heap);
+        result.sort(comparator);
+        return result;
+    }
+
+    private static final class Key<V extends Comparable<? super V>> implements Comparable<Key<V>> {
+        private final V value;
+        private final int id;
+
+        private Key(V value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        /*
+         * Only ratings change while indexed, other keys always match
+         */
+        private boolean matches(Product product) {
+            return !(value instanceof Rating) || value == product.getRating();
+        }
+
+        @Override
+        public int compareTo(Key<V> other) {
+            int result = value.compareTo(other.value);
+            return (result != 0) ? result : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -21,37 +21,72 @@
 package labs.pm.data;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
-import java.text.NumberFormat;
 import java.text.ParseException;
+import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.time.format.FormatStyle;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
-public class ProductManager {
-    private Map<Product, List<Review>> products = new HashMap<>();
+public class ProductManager implements AutoCloseable {
+    private IntHashMap<ProductEntry> products = new IntHashMap<>();
+    private ProductIndex index = new ProductIndex();
+    // product properties are kept off-heap with product.storage=columns
+    private final boolean columnar;
+    private ProductColumns columns;
 //    private ResourceFormatter formatter;
     private static final Logger logger = Logger.getLogger(ProductManager.class.getName());
-    private final ResourceBundle config = ResourceBundle.getBundle("config");
-    private final MessageFormat reviewFormat = new MessageFormat(config.getString("review.data.format"));
-    private final MessageFormat productFormat = new MessageFormat(config.getString("product.data.format"));
-    private final Path reportsFolder = Path.of(config.getString("reports.folder"));
-    private final Path dataFolder = Path.of(config.getString("data.folder"));
-    private final Path tempFolder = Path.of(config.getString("temp.folder"));
+    private static final int PRINT_PAGE_SIZE = 100;
+    private final ResourceBundle config;
+    private final Clock clock;
+    // data files may be loaded in parallel and clients may run on virtual threads,
+    // so parsers are reused through a small shared pool rather than one per thread
+    private static final int PARSER_POOL_SIZE = 16;
+    private static final BlockingQueue<CsvLineParser> parsers = new ArrayBlockingQueue<>(PARSER_POOL_SIZE);
+    private final Path reportsFolder;
+    private final Path dataFolder;
+    private final Path tempFolder;
+    private final ReviewLog reviewLog;
+    // reviews are paged in from review files on demand with reviews.loading=lazy
+    private final LazyReviews lazyReviews;
+    private final Journal journal;
+    // startup restores the latest snapshot, dumps checkpoint the journal
+    private final boolean restoreSnapshots;
+    private final ReportCache reportCache;
+    private final int reportCacheMaxReviews;
+    private final ThreadPoolExecutor reportExecutor;
+    // periodic dumps with snapshot.interval.seconds above zero
+    private final ScheduledExecutorService snapshots;
+    private final ConcurrentHashMap<String, PendingReport> pendingReports = new ConcurrentHashMap<>();
     private static final Map<String, ResourceFormatter> formatters =
             Map.of("en-GB", new ResourceFormatter(Locale.UK),
                     "en-US", new ResourceFormatter(Locale.US),
@@ -59,10 +94,23 @@ public class ProductManager {
                     "ru-RU", new ResourceFormatter(new Locale("ru", "RU")),
                     "zh-CN", new ResourceFormatter(Locale.CHINA)
             );
+    // initialized before the singleton, whose constructor registers metrics
+    private static final AtomicInteger managerCount = new AtomicInteger();
     private static final ProductManager pm = new ProductManager();
+    /*
+     * The read/write lock guards the structure of the product store:
+     * adding products or replacing the whole store requires the write lock,
+     * everything else, including reviews, runs under the read lock.
+     * Reviews are serialized per product by the ProductEntry lock.
+     */
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private final Lock writeLock = lock.writeLock();
-    private final Lock readLock = lock.readLock();
+    private final Lock writeLock;
+    private final Lock readLock;
+    // operation metrics are collected with metrics.enabled=true only
+    private final Metrics metrics;
+    // name of the registered metrics MBean and the periodic dump, set by registerMetrics
+    private ObjectName metricsName;
+    private ScheduledExecutorService metricsDumps;
 
     public static ProductManager getInstance(){
         return pm;
@@ -82,314 +130,1139 @@ public class ProductManager {
 
     private ProductManager() {
 //        changeLocale(languageTag);
-        loadAllData();
+        this(ResourceBundle.getBundle("config"));
+    }
+
+    ProductManager(ResourceBundle config) {
+        this(config, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param clock clock deciding which discounts are in effect
+     */
+    ProductManager(ResourceBundle config, Clock clock) {
+        this.config = config;
+        this.clock = clock;
+        columnar = "columns".equalsIgnoreCase(setting("product.storage", "heap"));
+        columns = columnar ? new ProductColumns(0) : null;
+        reportsFolder = Path.of(config.getString("reports.folder"));
+        dataFolder = Path.of(config.getString("data.folder"));
+        tempFolder = Path.of(config.getString("temp.folder"));
+        reviewLog = "log".equalsIgnoreCase(setting("reviews.storage", "csv"))
+                ? new ReviewLog(dataFolder.resolve(config.getString("reviews.log.file"))) : null;
+        boolean lazy = "lazy".equalsIgnoreCase(setting("reviews.loading", "eager"));
+        if (lazy && reviewLog != null) {
+            logger.log(Level.WARNING, "Lazy review loading needs reviews.storage=csv, loading reviews eagerly");
+        }
+        lazyReviews = (lazy && reviewLog == null)
+                ? new LazyReviews(this::loadReviews, Long.parseLong(setting("reviews.memory.budget", "67108864"))) : null;
+        journal = Boolean.parseBoolean(setting("journal.enabled", "false"))
+                ? new Journal(dataFolder.resolve(config.getString("journal.file")),
+                        Integer.parseInt(setting("journal.sync.records", "64")),
+                        Long.parseLong(setting("journal.sync.millis", "50"))) : null;
+        boolean restore = Boolean.parseBoolean(setting("snapshot.restore", "false"));
+        if (restore && reviewLog != null) {
+            logger.log(Level.WARNING, "Restoring snapshots needs reviews.storage=csv, loading data files");
+        }
+        restoreSnapshots = restore && reviewLog == null;
+        reportCache = new ReportCache(Integer.parseInt(setting("report.cache.size", "0")));
+        reportCacheMaxReviews = Integer.parseInt(setting("report.cache.max.reviews", "1000"));
+        int reportThreads = Integer.parseInt(setting("report.threads", "2"));
+        AtomicInteger reportThreadCount = new AtomicInteger();
+        // a full queue makes the submitting thread write the report itself, slowing down producers,
+        // reports submitted after close are rejected
+        reportExecutor = new ThreadPoolExecutor(reportThreads, reportThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Integer.parseInt(setting("report.queue.size", "100"))),
+                task -> {
+                    Thread thread = new Thread(task, "report-" + reportThreadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Report executor is shut down");
+                    }
+                    task.run();
+                });
+        metrics = Boolean.parseBoolean(setting("metrics.enabled", "false")) ? new Metrics() : null;
+        if (metrics != null) {
+            writeLock = metrics.timed(lock.writeLock(), true);
+            readLock = metrics.timed(lock.readLock(), false);
+            registerMetrics();
+        } else {
+            writeLock = lock.writeLock();
+            readLock = lock.readLock();
+        }
+        long journalSequence = restoreSnapshots ? restoreData() : -1;
+        if (journalSequence < 0) {
+            loadAllData();
+        }
+        if (journal != null) {
+            replayJournal(Math.max(journalSequence, 0));
+        }
+        long interval = Long.parseLong(setting("snapshot.interval.seconds", "0"));
+        if (interval > 0) {
+            snapshots = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshots.scheduleWithFixedDelay(this::dumpData, interval, interval, TimeUnit.SECONDS);
+        } else {
+            snapshots = null;
+        }
+    }
+
+    /**
+     * Stops background work of this manager: reports already submitted
+     * are written, periodic snapshots and metric dumps stop, the metrics
+     * MBean is unregistered and the journal and review log are closed.
+     * The manager must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (snapshots != null) {
+            snapshots.shutdown();
+        }
+        if (metricsDumps != null) {
+            metricsDumps.shutdown();
+        }
+        if (metricsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+            } catch (JMException e) {
+                logger.log(Level.WARNING, "Error unregistering metrics " + e.getMessage());
+            }
+            metricsName = null;
+        }
+        reportExecutor.shutdown();
+        try {
+            if (!reportExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.log(Level.WARNING, "Reports still running after close");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            if (reviewLog != null) {
+                reviewLog.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error closing manager " + e.getMessage(), e);
+        }
+    }
+
+    /*
+     * Registers gauges and the MBean of the metrics, and schedules the periodic
+     * text dump with metrics.dump.seconds above zero.
+     */
+    private void registerMetrics() {
+        metrics.gauge("products", () -> products.size());
+        metrics.gauge("locks.queued", lock::getQueueLength);
+        metrics.gauge("report.cache.hit.rate", () -> {
+            Map<String, Long> stats = reportCache.getStats();
+            long lookups = stats.get("hits") + stats.get("misses");
+            return (lookups > 0) ? stats.get("hits") / (double) lookups : 0;
+        });
+        metrics.gauge("report.cache.size", () -> reportCache.getStats().get("size"));
+        metrics.gauge("report.pending", pendingReports::size);
+        metrics.gauge("report.queue.size", () -> reportExecutor.getQueue().size());
+        metrics.gauge("report.threads.active", reportExecutor::getActiveCount);
+        if (columnar) {
+            metrics.gauge("columns.offheap.bytes", () -> columns.offHeapBytes());
+        }
+        if (journal != null) {
+            metrics.gauge("journal.bytes", () -> fileSize(journal.getFile()));
+        }
+        if (reviewLog != null) {
+            metrics.gauge("reviews.log.bytes", () -> fileSize(reviewLog.getFile()));
+        }
+        if (lazyReviews != null) {
+            metrics.gauge("reviews.memory.bytes", lazyReviews::getBytes);
+            metrics.gauge("reviews.paged.in", lazyReviews::getPagedIn);
+            metrics.gauge("reviews.paged.out", lazyReviews::getPagedOut);
+        }
+        try {
+            ObjectName name = new ObjectName("labs.pm:type=ProductManager,name=" + managerCount.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            metricsName = name;
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Error registering metrics " + e.getMessage());
+        }
+        long interval = Long.parseLong(setting("metrics.dump.seconds", "0"));
+        if (interval > 0) {
+            metricsDumps = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            metricsDumps.scheduleWithFixedDelay(() -> logger.log(Level.INFO, metrics.getReport()),
+                    interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    private long started() {
+        return (metrics != null) ? System.nanoTime() : 0;
+    }
+
+    private void finished(Metrics.Timer timer, long start) {
+        if (metrics != null) {
+            metrics.record(timer, start);
+        }
+    }
+
+    private void countBytes(Metrics.Counter counter, Path file) {
+        if (metrics != null) {
+            metrics.add(counter, fileSize(file));
+        }
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return metrics of this manager, or {@code null} unless
+     * {@code metrics.enabled=true} is configured
+     */
+    public MetricsMXBean getMetrics() {
+        return metrics;
     }
 
     public Product createProduct(int id, String name, BigDecimal price, Rating rating, LocalDate bestBefore) {
+        long start = started();
         Product product = null;
         try {
+            writeLock.lock();
             product = new Food(id, name, price, rating, bestBefore);
-            products.putIfAbsent(product, new ArrayList<>());
-        }
-        catch (Exception e){
+            addProduct(product);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error journaling product " + id + " " + e.getMessage(), e);
+            return null;
+        } catch (Exception e){
             logger.log(Level.INFO, "Error handling product"+e.getMessage());
             return null;
         } finally {
             writeLock.unlock();
+            finished(Metrics.Timer.CREATE_PRODUCT, start);
         }
         return product;
     }
 
     public Product createProduct(int id, String name, BigDecimal price, Rating rating) {
+        long start = started();
         Product product = null;
         try {
             writeLock.lock();
             product = new Drink(id, name, price, rating);
-            products.putIfAbsent(product, new ArrayList<>());
+            addProduct(product);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error journaling product " + id + " " + e.getMessage(), e);
+            return null;
         } catch (Exception e){
             logger.log(Level.INFO, "Error handling product"+e.getMessage());
             return null;
         } finally {
             writeLock.unlock();
+            finished(Metrics.Timer.CREATE_PRODUCT, start);
         }
         return product;
     }
 
     public Product reviewProduct(int id, Rating rating, String comments) {
+        long start = started();
+        if (lazyReviews != null) {
+            loadStats(new int[]{id}, 1);
+        }
         try {
-            writeLock.lock();
-            return reviewProduct(findProduct(id), rating, comments);
+            readLock.lock();
+            ProductEntry entry = findEntry(id);
+            Review review = new Review(rating, comments);
+            // the review is persisted before it is added, a review that cannot be persisted is not added
+            persistReview(id, review);
+            return entry.addReview(review, index);
         } catch (ProductManagerException e) {
             e.printStackTrace();
             return null;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error persisting review of product " + id + " " + e.getMessage(), e);
+            return null;
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
+            finished(Metrics.Timer.REVIEW_PRODUCT, start);
         }
     }
 
+    /*
+     * Captures a point-in-time view of the store and writes it without holding
+     * any lock, the file is written under a temporary name and moved in place
+     * once complete, older dumps are deleted afterwards.
+     */
     private void dumpData(){
+        long start = started();
+        Path tempFile = tempFolder.resolve(MessageFormat.format(config.getString("temp.file"), Instant.now()));
+        Path partFile = tempFile.resolveSibling(tempFile.getFileName() + ".part");
         try {
             if (Files.notExists(tempFolder)){
                 Files.createDirectory(tempFolder);
             }
-            Path tempFile = tempFolder.resolve(MessageFormat.format(config.getString("temp.file"), Instant.now()));
-            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(tempFile, StandardOpenOption.CREATE))){
-                out.writeObject(products);
-//                products = new HashMap<>();
+            Map<Product, List<Review>> data = new HashMap<>();
+            Map<Integer, RatingStats> stats = new HashMap<>();
+            Journal.Mark mark = snapshot(data, stats);
+            SnapshotCodec.write(partFile, data, stats, Boolean.parseBoolean(setting("snapshot.compress", "false")),
+                    (mark != null) ? mark.getSequence() : 0);
+            Files.move(partFile, tempFile, StandardCopyOption.ATOMIC_MOVE);
+            countBytes(Metrics.Counter.BYTES_WRITTEN, tempFile);
+            if (mark != null) {
+                journal.checkpoint(mark);
             }
-        } catch (IOException e) {
+            try (Stream<Path> list = Files.list(tempFolder)) {
+                for (Path file : (Iterable<Path>) list::iterator) {
+                    if (file.getFileName().toString().endsWith("tmp") && !file.equals(tempFile)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // runtime errors are caught too, they would cancel the scheduled snapshots
             logger.log(Level.SEVERE,
                     "Error dumping data "
                     + e.getMessage(), e);
-            e.printStackTrace();
+            try {
+                Files.deleteIfExists(partFile);
+            } catch (IOException deleteError) {
+                logger.log(Level.WARNING, "Error deleting " + partFile + " " + deleteError.getMessage());
+            }
+        } finally {
+            finished(Metrics.Timer.DUMP_DATA, start);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void restoreData (){
-        try {
-            Path tempFile = Files.list(tempFolder)
+    /*
+     * Restores the latest snapshot, which is kept until a newer one replaces it.
+     * Returns the number of journal records the snapshot holds,
+     * or -1 if there is no snapshot or it cannot be read.
+     */
+    private long restoreData (){
+        if (Files.notExists(tempFolder)) {
+            return -1;
+        }
+        long start = started();
+        try (Stream<Path> list = Files.list(tempFolder)) {
+            Optional<Path> latest = list
                     .filter(path -> path.getFileName().toString().endsWith("tmp"))
-                    .findFirst()
-                    .orElseThrow();
-            try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(tempFile, StandardOpenOption.DELETE_ON_CLOSE))){
-                products = (HashMap)in.readObject();
+                    .max(Comparator.comparing(Path::getFileName));
+            if (latest.isEmpty()) {
+                return -1;
             }
+            Path tempFile = latest.get();
+            Map<Product, List<Review>> data = new HashMap<>();
+            Map<Integer, RatingStats> stats = new HashMap<>();
+            countBytes(Metrics.Counter.BYTES_READ, tempFile);
+            long journalSequence = SnapshotCodec.read(tempFile, data, stats, StandardOpenOption.READ);
+            replaceAll(data, stats, null);
+            logger.log(Level.INFO, "Restored " + data.size() + " products from " + tempFile);
+            return journalSequence;
         } catch (Exception e){
             logger.log(Level.SEVERE, "Error restoring data " + e.getMessage(), e);
+            return -1;
+        } finally {
+            finished(Metrics.Timer.RESTORE_DATA, start);
         }
     }
 
     private void loadAllData(){
-        try {
-            products = Files.list(dataFolder)
-                    .filter(file -> file.getFileName().toString().startsWith("product"))
-                    .map(this::loadProduct)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toMap(product -> product, this::loadReviews));
+        long start = started();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dataFolder)) {
+            files = list.filter(file -> file.getFileName().toString().startsWith("product"))
+                    .collect(Collectors.toList());
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Error loading data "+e.getMessage(), e);
+            return;
+        }
+        int threads = Math.min(loadThreads(), Math.max(files.size(), 1));
+        LoadProgress progress = new LoadProgress(files.size());
+        Map<Product, List<Review>> data = new ConcurrentHashMap<>(files.size() * 2);
+        if (threads > 1) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                executor.invokeAll(files.stream()
+                        .map(file -> Executors.callable(() -> loadFile(file, data, progress)))
+                        .collect(Collectors.toList()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.log(Level.SEVERE, "Loading data interrupted", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            files.forEach(file -> loadFile(file, data, progress));
+        }
+        progress.finish(threads);
+        if (metrics != null) {
+            metrics.add(Metrics.Counter.FILES_LOADED, progress.getFiles() - progress.getFailures());
+            metrics.add(Metrics.Counter.FILES_FAILED, progress.getFailures());
+            metrics.add(Metrics.Counter.REVIEWS_LOADED, progress.getReviews());
+            metrics.add(Metrics.Counter.LOAD_NANOS, System.nanoTime() - start);
+        }
+        if (reviewLog != null) {
+            loadReviewLog(data);
+        }
+        replaceAll(data, Map.of(), lazyReviews);
+        finished(Metrics.Timer.LOAD_DATA, start);
+    }
+
+    private String setting(String key, String defaultValue) {
+        return config.containsKey(key) ? config.getString(key).trim() : defaultValue;
+    }
+
+    private int loadThreads() {
+        int threads = Integer.parseInt(setting("data.load.threads", "1"));
+        return (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private void loadReviewLog(Map<Product, List<Review>> data) {
+        if (Files.notExists(reviewLog.getFile())) {
+            convertReviewFiles();
+        }
+        IntHashMap<List<Review>> reviews = new IntHashMap<>(data.size());
+        data.forEach((product, list) -> reviews.put(product.getId(), list));
+        long[] orphans = new long[1];
+        try {
+            long count = reviewLog.open((review, id) -> {
+                List<Review> list = reviews.get(id);
+                if (list != null) {
+                    list.add(review);
+                } else {
+                    orphans[0]++;
+                }
+            });
+            logger.log(Level.INFO, "Loaded " + count + " reviews from " + reviewLog.getFile());
+            countBytes(Metrics.Counter.BYTES_READ, reviewLog.getFile());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error loading review log " + e.getMessage(), e);
+        }
+        if (orphans[0] > 0) {
+            logger.log(Level.WARNING, "Skipped " + orphans[0] + " reviews of unknown products");
+        }
+    }
+
+    /**
+     * Adds reviews of many products at once
+     * <br>
+     * Reviews are grouped by product id, each group is added under a single
+     * acquisition of the product lock followed by one rating update.
+     * Reviews of unknown products are skipped, as are reviews of a product
+     * following one that could not be persisted.
+     * @return a {@link java.util.List List} of updated products, in order
+     * of their first review in the batch
+     */
+    public List<Product> reviewProducts(Collection<ProductReview> reviews) {
+        long start = started();
+        IntHashMap<List<Review>> groups = new IntHashMap<>();
+        int[] order = new int[reviews.size()];
+        int groupCount = 0;
+        for (ProductReview review : reviews) {
+            int id = review.getProductId();
+            List<Review> group = groups.get(id);
+            if (group == null) {
+                group = new ArrayList<>(1);
+                groups.put(id, group);
+                order[groupCount++] = id;
+            }
+            group.add(new Review(review.getRating(), review.getComments()));
+        }
+        if (lazyReviews != null) {
+            loadStats(order, groupCount);
+        }
+        List<Product> updated = new ArrayList<>(groupCount);
+        try {
+            readLock.lock();
+            for (int i = 0; i < groupCount; i++) {
+                int id = order[i];
+                List<Review> group = groups.get(id);
+                ProductEntry entry = products.get(id);
+                if (entry == null) {
+                    logger.log(Level.INFO, "Product with id " + id + " not found, "
+                            + group.size() + " reviews skipped");
+                    continue;
+                }
+                int persisted = 0;
+                try {
+                    for (Review review : group) {
+                        persistReview(id, review);
+                        persisted++;
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Error persisting review of product " + id + ", "
+                            + (group.size() - persisted) + " reviews skipped " + e.getMessage(), e);
+                }
+                if (persisted > 0) {
+                    updated.add(entry.addReviews(group.subList(0, persisted), index));
+                }
+            }
+        } finally {
+            readLock.unlock();
+            finished(Metrics.Timer.REVIEW_PRODUCTS, start);
+        }
+        return updated;
+    }
+
+    /*
+     * Reads rating aggregates of products not reviewed yet from their review
+     * files before reviews are added, without holding the store lock.
+     */
+    private void loadStats(int[] ids, int count) {
+        List<ProductEntry> entries = new ArrayList<>(count);
+        try {
+            readLock.lock();
+            for (int i = 0; i < count; i++) {
+                ProductEntry entry = products.get(ids[i]);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        entries.forEach(ProductEntry::loadStats);
+    }
+
+    /*
+     * Applies journal records on top of the loaded data. With the review log
+     * storage reviews are already persisted there, so the journal only
+     * holds product creations. Records held by a restored snapshot are skipped.
+     */
+    private void replayJournal(long from) {
+        try {
+            writeLock.lock();
+            long count = journal.open(new Journal.Replay() {
+                @Override
+                public void product(Product product) {
+                    addEntry(product);
+                }
+
+                @Override
+                public void review(int id, Review review) {
+                    ProductEntry entry = products.get(id);
+                    if (entry != null) {
+                        entry.addReview(review, index);
+                    } else {
+                        logger.log(Level.WARNING, "Journal review of unknown product " + id);
+                    }
+                }
+            }, from);
+            logger.log(Level.INFO, "Replayed " + count + " journal records from " + journal.getFile());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Error closing journal " + e.getMessage(), e);
+                }
+            }));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error replaying journal " + e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /*
+     * Journals a new product before adding it, called under the write lock.
+     * When the journal cannot be written the product is not added.
+     */
+    private void addProduct(Product product) throws IOException {
+        if (products.containsKey(product.getId())) {
+            return;
+        }
+        if (journal != null) {
+            journal.logProduct(product);
         }
+        addEntry(product);
+    }
+
+    /*
+     * Writes a review to the review log, or to the journal, before it is added
+     */
+    private void persistReview(int id, Review review) throws IOException {
+        if (reviewLog != null) {
+            reviewLog.append(id, review);
+        } else if (journal != null) {
+            journal.logReview(id, review);
+        }
+    }
+
+    /*
+     * Converts per product review files of the data folder into a single
+     * review log on the first start with reviews.storage=log, before the log
+     * is opened, the review files themselves are left untouched.
+     */
+    private void convertReviewFiles() {
+        long start = started();
+        Path logFile = dataFolder.resolve(config.getString("reviews.log.file"));
+        Path tempFile = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+        long count = 0;
+        try (Stream<Path> list = Files.list(dataFolder)) {
+            Files.deleteIfExists(tempFile);
+            try (ReviewLog log = new ReviewLog(tempFile)) {
+                log.open((review, id) -> {});
+                for (Path productFile : (Iterable<Path>) list::iterator) {
+                    Product product = productFile.getFileName().toString().startsWith("product")
+                            ? loadProduct(productFile) : null;
+                    if (product == null) {
+                        continue;
+                    }
+                    int id = product.getId();
+                    Path file = dataFolder.resolve(MessageFormat.format(config.getString("reviews.data.file"), id));
+                    if (Files.notExists(file)) {
+                        continue;
+                    }
+                    try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                        for (Review review : (Iterable<Review>) lines.map(this::parseReview).filter(Objects::nonNull)::iterator) {
+                            log.append(id, review);
+                            count++;
+                        }
+                    }
+                }
+            }
+            Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.log(Level.INFO, "Converted " + count + " reviews into " + logFile);
+        } catch (IOException | UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Error converting review files " + e.getMessage(), e);
+        } finally {
+            finished(Metrics.Timer.CONVERT_REVIEW_FILES, start);
+        }
+    }
+
+    private void loadFile(Path file, Map<Product, List<Review>> data, LoadProgress progress) {
+        try {
+            Product product = loadProduct(file);
+            if (product == null) {
+                progress.failed();
+                return;
+            }
+            // with lazy loading and the review log, reviews are not read from review files here
+            List<Review> reviews = (reviewLog == null && lazyReviews == null)
+                    ? loadReviews(product.getId()) : new ArrayList<>();
+            if (reviews == null) {
+                // the product is kept when its review file cannot be read
+                logger.log(Level.WARNING, "Product " + product.getId() + " loaded without reviews from " + file);
+                reviews = new ArrayList<>();
+            }
+            if (data.putIfAbsent(product, reviews) != null) {
+                logger.log(Level.WARNING, "Duplicate product " + product.getId() + " in " + file);
+            }
+            progress.loaded(reviews.size());
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Error loading file " + file + " " + e.getMessage());
+            progress.failed();
+        }
+    }
+
+    /*
+     * Adds an entry of a new product, called under the write lock.
+     */
+    private boolean addEntry(Product product) {
+        if (products.containsKey(product.getId())) {
+            return false;
+        }
+        products.put(product.getId(), newEntry(columns, product, null, null, null));
+        index.add(product);
+        return true;
+    }
+
+    private static ProductEntry newEntry(ProductColumns columns, Product product,
+                                         List<Review> reviews, RatingStats stats, LazyReviews source) {
+        return (columns != null)
+                ? new ColumnProductEntry(columns, product, reviews, stats, source)
+                : new ProductEntry(product, reviews, stats, source);
+    }
+
+    /*
+     * Replaces the store, entries page in reviews from review files
+     * with a source, otherwise they hold the given reviews.
+     */
+    private void replaceAll(Map<Product, List<Review>> data, Map<Integer, RatingStats> stats, LazyReviews source) {
+        IntHashMap<ProductEntry> store = new IntHashMap<>(data.size());
+        ProductIndex storeIndex = new ProductIndex();
+        ProductColumns storeColumns = columnar ? new ProductColumns(data.size()) : null;
+        data.forEach((product, reviews) -> {
+            store.put(product.getId(), newEntry(storeColumns, product, reviews, stats.get(product.getId()), source));
+            storeIndex.add(product);
+        });
+        try {
+            writeLock.lock();
+            products = store;
+            index = storeIndex;
+            columns = storeColumns;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /*
+     * The write lock waits for reviews in progress and holds new ones back only
+     * while entries are captured, which is O(1) per product as review lists
+     * are append-only and captured without copying.
+     */
+    /*
+     * Returns the journal position the snapshot covers when the journal
+     * is checkpointed after dumps, no records are written while it is taken.
+     */
+    private Journal.Mark snapshot(Map<Product, List<Review>> data, Map<Integer, RatingStats> stats) throws IOException {
+        Map<Product, ProductEntry> partial = new HashMap<>();
+        Journal.Mark mark;
+        try {
+            writeLock.lock();
+            products.forEach(entry -> {
+                Product product = entry.copyTo(data, stats);
+                if (product != null) {
+                    partial.put(product, entry);
+                }
+            });
+            mark = (restoreSnapshots && journal != null) ? journal.mark() : null;
+        } finally {
+            writeLock.unlock();
+        }
+        // reviews not paged in are read from review files without holding the lock
+        partial.forEach((product, entry) -> entry.copyStored(product, data, stats));
+        return mark;
+    }
+
+    private List<Product> productList() {
+        List<Product> list = new ArrayList<>(products.size());
+        products.forEach(entry -> list.add(entry.getProduct()));
+        return list;
     }
 
     private Product loadProduct (Path file){
         Product product = null;
-        try {
-            product = parseProduct(Files.lines(dataFolder.resolve(file), StandardCharsets.UTF_8).findFirst().orElseThrow());
+        try (Stream<String> lines = Files.lines(dataFolder.resolve(file), StandardCharsets.UTF_8)) {
+            product = parseProduct(lines.findFirst().orElseThrow());
+            countBytes(Metrics.Counter.BYTES_READ, dataFolder.resolve(file));
         } catch (Exception e) {
             logger.log(Level.WARNING, "Error loading product "+e.getMessage());
         }
         return product;
     }
 
-    private List<Review> loadReviews (Product product){
+    private List<Review> loadReviews (int id){
         List<Review> reviews = null;
-        Path file = dataFolder.resolve(MessageFormat.format(config.getString("reviews.data.file"), product.getId()));
+        Path file = dataFolder.resolve(MessageFormat.format(config.getString("reviews.data.file"), id));
         if (Files.notExists(file)){
             reviews = new ArrayList<>();
         } else {
-            try {
-                reviews = Files.lines(file, StandardCharsets.UTF_8)
+            try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                reviews = lines
                         .map(this::parseReview)
                         .filter(Objects::nonNull)
                         .collect(Collectors.toList());
-            } catch (IOException e) {
+                countBytes(Metrics.Counter.BYTES_READ, file);
+            } catch (IOException | UncheckedIOException e) {
                 logger.log(Level.WARNING, "Error loading reviews "+ e.getMessage());
             }
         }
         return reviews;
     }
 
-    private Review parseReview (String text){
+    Review parseReview (String text){
         Review review = null;
+        CsvLineParser parser = parser(text);
         try {
-            Object[] values = reviewFormat.parse(text);
             review = new Review(
-                    Rateable.convert(Integer.parseInt((String)values[0])),
-                    (String) values[1]
+                    Rateable.convert(parser.nextInt()),
+                    parser.remaining()
             );
-        } catch (ParseException | NumberFormatException e) {
+        } catch (ParseException e) {
             logger.log(Level.WARNING, "Error parsing review "+text);
+        } finally {
+            parsers.offer(parser);
         }
         return review;
     }
 
-    private Product parseProduct (String text){
+    Product parseProduct (String text){
         Product product = null;
+        CsvLineParser parser = parser(text);
         try {
-            Object[] values = productFormat.parse(text);
-            int id = Integer.parseInt((String) values[1]);
-            String name = (String) values[2];
-            BigDecimal price = BigDecimal.valueOf(Double.parseDouble((String) values[3]));
-            Rating rating = Rateable.convert(Integer.parseInt((String) values[4]));
-            switch ((String) values[0]){
-                case "D":
+            char type = parser.nextChar();
+            int id = parser.nextInt();
+            String name = parser.nextString();
+            BigDecimal price = parser.nextDecimal();
+            Rating rating = Rateable.convert(parser.nextInt());
+            switch (type){
+                case 'D':
                     product = new Drink(id,name,price,rating);
                     break;
-                case "F":
-                    LocalDate bestBefore = LocalDate.parse((String) values[5]);
+                case 'F':
+                    LocalDate bestBefore = parser.nextDate();
                     product = new Food(id,name,price,rating,bestBefore);
                     break;
             }
-        } catch (ParseException | NumberFormatException | DateTimeParseException e) {
+        } catch (ParseException e) {
             logger.log(Level.WARNING, "Error parsing product "+text+e.getMessage());
+        } finally {
+            parsers.offer(parser);
         }
         return product;
     }
 
-    private Product reviewProduct(Product product, Rating rating, String comments) {
-
-        List<Review> reviews = products.get(product);
-        products.remove(product, reviews);
-        reviews.add(new Review(rating, comments));
-//        int sum = 0;
-//        for (Review review : reviews){
-//            sum += review.getRating().ordinal();
-//        }
-//        product = product.applyRating(Rateable.convert(Math.round((float) sum / reviews.size())));
-        product = product.applyRating(
-                Rateable.convert(
-                        (int) Math.round(
-                                reviews.stream()
-                                        .mapToInt(r -> r.getRating().ordinal())
-                                        .average()
-                                        .orElse(0)
-                        )));
-        products.put(product, reviews);
-        return product;
+    /*
+     * Takes a parser from the pool or creates one when all are in use,
+     * the caller offers it back, it is dropped when the pool is full
+     */
+    private static CsvLineParser parser(String text) {
+        CsvLineParser parser = parsers.poll();
+        return ((parser != null) ? parser : new CsvLineParser()).reset(text);
     }
 
     public Product findProduct(int id) throws ProductManagerException {
-//        Product result = null;
-//        for (Product product: products.keySet()){
-//            if (product.getId() == id){
-//                result = product;
-//                break;
-//            }
-//        }
-//        return result;
+        long start = started();
         try {
             readLock.lock();
-            return products.keySet()
-                    .stream()
-                    .filter((p) -> p.getId() == id)
-                    .findFirst()
-                    .orElseThrow(() -> new ProductManagerException("Product with id " + id + " not found"));//.orElseGet(() -> null);
+            return findEntry(id).getProduct();
         } finally {
             readLock.unlock();
+            finished(Metrics.Timer.FIND_PRODUCT, start);
+        }
+    }
+
+    private ProductEntry findEntry(int id) throws ProductManagerException {
+        ProductEntry entry = products.get(id);
+        if (entry == null) {
+            throw new ProductManagerException("Product with id " + id + " not found");
         }
+        return entry;
     }
 
     public void printProductReport(int id, String languageTag, String client) {
+        long start = started();
+        try {
+            printEntryReport(id, languageTag, client);
+        } finally {
+            finished(Metrics.Timer.PRINT_PRODUCT_REPORT, start);
+        }
+    }
+
+    private void printEntryReport(int id, String languageTag, String client) {
+        ProductEntry entry;
         try {
             readLock.lock();
-            printProductReport(findProduct(id), languageTag, client);
+            entry = findEntry(id);
         } catch (ProductManagerException e) {
             logger.log(Level.INFO, e.getMessage());
+            return;
+        } finally {
+            readLock.unlock();
+        }
+        // the product and its reviews are captured together, the report is written without holding the lock
+        try {
+            printProductReport(entry.capture(), languageTag, client);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Error printing product report "+e.getMessage());
+        }
+    }
+
+    /**
+     * Prints a product report on the report executor
+     * <br>
+     * The product and its reviews are captured together when this method is called.
+     * Requests for the same product and client that are still waiting to run
+     * are coalesced into one report of the latest state, requests arriving while
+     * that report is being written are run after it.
+     * @return a {@link java.util.concurrent.CompletableFuture CompletableFuture}
+     * completed with the report file, or exceptionally if the product is not found
+     * or the report could not be written
+     */
+    public CompletableFuture<Path> printProductReportAsync(int id, String languageTag, String client) {
+        long start = started();
+        try {
+            return submitReport(id, languageTag, client);
+        } finally {
+            finished(Metrics.Timer.PRINT_PRODUCT_REPORT_ASYNC, start);
+        }
+    }
+
+    private CompletableFuture<Path> submitReport(int id, String languageTag, String client) {
+        ProductEntry entry;
+        try {
+            readLock.lock();
+            entry = findEntry(id);
+        } catch (ProductManagerException e) {
+            return CompletableFuture.failedFuture(e);
         } finally {
             readLock.unlock();
         }
+        // reviews may be paged in from disk, which is done without holding the store lock
+        ReportRequest request = new ReportRequest(entry.capture(), languageTag);
+        String key = id + "/" + client;
+        PendingReport[] created = new PendingReport[2];
+        PendingReport pending = pendingReports.compute(key, (k, current) -> {
+            if (current != null && current.update(request)) {
+                return current;
+            }
+            created[0] = new PendingReport(request);
+            created[1] = current;
+            return created[0];
+        });
+        if (created[0] != null) {
+            PendingReport next = created[0];
+            Runnable task = () -> {
+                try {
+                    reportExecutor.execute(() -> runReport(key, client, next));
+                } catch (RejectedExecutionException e) {
+                    pendingReports.remove(key, next);
+                    next.future.completeExceptionally(e);
+                }
+            };
+            if (created[1] == null) {
+                task.run();
+            } else {
+                created[1].future.whenComplete((file, e) -> task.run());
+            }
+        }
+        return pending.future;
     }
 
-    private void printProductReport(Product product, String languageTag, String client) throws IOException {
-        ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
-        List<Review> reviews = products.get(product);
-//        StringBuilder txt = new StringBuilder();
+    private void runReport(String key, String client, PendingReport pending) {
+        ReportRequest request = pending.start();
+        try {
+            pending.future.complete(printProductReport(request.state, request.languageTag, client));
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Error printing product report "+e.getMessage());
+            pending.future.completeExceptionally(e);
+        } finally {
+            pendingReports.remove(key, pending);
+        }
+    }
+
+    private static class ReportRequest {
+        private final ProductEntry.State state;
+        private final String languageTag;
+
+        private ReportRequest(ProductEntry.State state, String languageTag) {
+            this.state = state;
+            this.languageTag = languageTag;
+        }
+    }
+
+    /**
+     * A report waiting for the executor, its request can be replaced
+     * by a newer one until it starts
+     */
+    private static class PendingReport {
+        private final CompletableFuture<Path> future = new CompletableFuture<>();
+        private final Lock lock = new ReentrantLock();
+        private ReportRequest request;
+        private boolean started;
+
+        private PendingReport(ReportRequest request) {
+            this.request = request;
+        }
+
+        private boolean update(ReportRequest request) {
+            try {
+                lock.lock();
+                if (started) {
+                    return false;
+                }
+                this.request = request;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private ReportRequest start() {
+            try {
+                lock.lock();
+                started = true;
+                return request;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Path printProductReport(ProductEntry.State state, String languageTag, String client) throws IOException {
+        long start = started();
+        Product product = state.getProduct();
+        List<Review> reviews = state.getReviews();
+        String tag = formatters.containsKey(languageTag) ? languageTag : "en-GB";
+        ResourceFormatter formatter = formatters.get(tag);
         Path productFile = reportsFolder.resolve(MessageFormat.format(config.getString("report.file"), product.getId(), client));
-        try(PrintWriter out = new PrintWriter(new OutputStreamWriter(Files.newOutputStream(productFile, StandardOpenOption.CREATE), StandardCharsets.UTF_8))){
-        out.append(formatter.formatProduct(product)).append(System.lineSeparator());
+        try (ReportWriter out = ReportWriter.open(productFile)) {
+            if (reviews.size() <= reportCacheMaxReviews) {
+                out.append(reportCache.get(product.getId(), reviews.size(), product.getBestBefore().toEpochDay(), tag,
+                        () -> renderReport(formatter, product, reviews)));
+            } else {
+                StringBuilder txt = out.buffer();
+                formatter.formatProduct(product, txt).append(System.lineSeparator());
+                for (Review review : reviews) {
+                    formatter.formatReview(review, txt).append(System.lineSeparator());
+                    out.flushIfFull();
+                }
+            }
+        }
+        if (metrics != null) {
+            metrics.add(Metrics.Counter.REPORTS_WRITTEN, 1);
+            countBytes(Metrics.Counter.BYTES_WRITTEN, productFile);
+            finished(Metrics.Timer.WRITE_REPORT, start);
+        }
+        return productFile;
+    }
+
+    private static String renderReport(ResourceFormatter formatter, Product product, List<Review> reviews) {
+        StringBuilder txt = new StringBuilder();
+        formatter.formatProduct(product, txt).append(System.lineSeparator());
         if (reviews.isEmpty()) {
-            out.append(formatter.getText("no.reviews")).append(System.lineSeparator());
+            txt.append(formatter.getText("no.reviews")).append(System.lineSeparator());
         } else {
-            out.append(reviews.stream()
-                    .map(r -> formatter.formatReview(r) + System.lineSeparator())
-                    .collect(Collectors.joining())
-            );
-        }}
-//        Collections.sort(reviews);
-//        for (Review review : reviews) {
-//            txt.append(formatter.formatReview(review));
-//            txt.append('\n');
-//        }
-//        if (reviews.isEmpty()) {
-//            txt.append(formatter.getText("no.reviews"));
-//            txt.append('\n');
-//        }
-//        System.out.println(txt);
+            reviews.forEach(r -> formatter.formatReview(r, txt).append(System.lineSeparator()));
+        }
+        return txt.toString();
     }
 
     public void printProducts(Predicate<Product> filter, Comparator<Product> sorter, String languageTag) {
+        printProducts(ProductQuery.all().filter(filter).orderBy(sorter), languageTag);
+    }
+
+    /**
+     * Finds products selected by the query, using price, rating and
+     * best-before indexes where the query allows
+     * @return a {@link java.util.List List} of products in query order
+     */
+    public List<Product> findProducts(ProductQuery query) {
+        long start = started();
         try {
             readLock.lock();
-            ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
-//        List<Product> productList = new ArrayList<>(products.keySet());
-//        productList.sort(sorter);
-            StringBuilder txt = new StringBuilder();
-            products.keySet()
-                    .stream()
-                    .sorted(sorter)
-                    .filter(filter)
-                    .forEach((p) -> txt.append(formatter.formatProduct(p) + '\n')
-                    );
-//        for (Product product: productList){
-//            txt.append(formatter.formatProduct(product));
-//            txt.append('\n');
-//        }
-            System.out.println(txt);
+            return index.query(query, products);
         } finally {
             readLock.unlock();
+            finished(Metrics.Timer.FIND_PRODUCTS, start);
         }
     }
 
-    public Map<String, String> getDiscounts(String languageTag) {
+    /**
+     * Lists the first page of products selected by the query
+     * @return a {@link ProductPage} with up to {@code pageSize} products
+     */
+    public ProductPage listProducts(ProductQuery query, int pageSize) {
+        return listProducts(ProductPage.Cursor.start(query), pageSize);
+    }
+
+    /**
+     * Lists the page of products following the cursor
+     * <br>
+     * The store is locked while a single page is read, so the time
+     * taken depends on the page size rather than on the number of
+     * products. Listings in an order without an index collect matching
+     * products once for the first page and sort them without locking.
+     * @return a {@link ProductPage} with up to {@code pageSize} products
+     */
+    public ProductPage listProducts(ProductPage.Cursor cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive " + pageSize);
+        }
+        long start = started();
         try {
-            readLock.lock();
-            ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
-            return products.keySet()
-                    .stream()
-                    .collect(
-                            Collectors.groupingBy(
-                                    product -> product.getRating().getStars(),
-                                    Collectors.collectingAndThen(
-                                            Collectors.summingDouble(
-                                                    product -> product.getDiscount().doubleValue()),
-                                            discount -> formatter.moneyFormat.format(discount))));
+            return listPage(cursor, pageSize);
         } finally {
-            readLock.unlock();
+            finished(Metrics.Timer.LIST_PRODUCTS, start);
         }
     }
 
-    private static class ResourceFormatter {
-        private Locale locale;
-        private ResourceBundle resourceBundle;
-        private DateTimeFormatter dateFormat;
-        private NumberFormat moneyFormat;
-
-        private ResourceFormatter(Locale locale) {
-            this.locale = locale;
-            resourceBundle = ResourceBundle.getBundle("resources", locale);
-            dateFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).localizedBy(locale);
-            moneyFormat = NumberFormat.getCurrencyInstance(locale);
+    private ProductPage listPage(ProductPage.Cursor cursor, int pageSize) {
+        ProductQuery query = cursor.getQuery();
+        List<Product> sorted = cursor.getSorted();
+        if (sorted == null) {
+            try {
+                readLock.lock();
+                if (index.isPageable(query)) {
+                    return index.page(cursor, pageSize, products);
+                }
+                sorted = index.select(query, products);
+            } finally {
+                readLock.unlock();
+            }
+            sorted = ProductIndex.top(sorted, query.comparator(), query.getLimit());
         }
+        int from = cursor.getPosition();
+        int to = Math.min(from + pageSize, sorted.size());
+        return new ProductPage(sorted.subList(from, to),
+                (to < sorted.size()) ? ProductPage.Cursor.at(cursor, sorted, to) : null);
+    }
 
-        private String formatProduct(Product product) {
-            return MessageFormat.format(resourceBundle.getString("product"),
-                    product.getName(),
-                    moneyFormat.format(product.getPrice()),
-                    product.getRating().getStars(),
-                    dateFormat.format(product.getBestBefore()));
+    /**
+     * Passes products selected by the query to the consumer
+     * page by page, the store is not locked while a page is consumed
+     */
+    public void listProducts(ProductQuery query, int pageSize, Consumer<List<Product>> consumer) {
+        ProductPage page = listProducts(query, pageSize);
+        while (true) {
+            if (!page.getProducts().isEmpty()) {
+                consumer.accept(page.getProducts());
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = listProducts(page.getNext(), pageSize);
         }
+    }
+
+    public void printProducts(ProductQuery query, String languageTag) {
+        long start = started();
+        ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
+        StringBuilder txt = new StringBuilder();
+        listProducts(query, PRINT_PAGE_SIZE, page -> {
+            txt.setLength(0);
+            page.forEach(p -> formatter.formatProduct(p, txt).append('\n'));
+            System.out.print(txt);
+        });
+        System.out.println();
+        finished(Metrics.Timer.PRINT_PRODUCTS, start);
+    }
 
-        private String formatReview(Review review) {
-            return MessageFormat.format(resourceBundle.getString("review"),
-                    review.getRating().getStars(),
-                    review.getComments());
+    /**
+     * Returns report cache statistics: hits, misses, evictions, size and capacity
+     * @return a {@link java.util.Map Map} of statistic names to values
+     */
+    public Map<String, Long> getReportCacheStats() {
+        long start = started();
+        try {
+            return reportCache.getStats();
+        } finally {
+            finished(Metrics.Timer.GET_REPORT_CACHE_STATS, start);
         }
+    }
 
-        private String getText(String key) {
-            return resourceBundle.getString(key);
+    /**
+     * Returns discounts in effect summed per rating, read from totals
+     * maintained as products are created and reviewed
+     * @return a {@link java.util.Map Map} of rating stars to formatted discounts
+     */
+    public Map<String, String> getDiscounts(String languageTag) {
+        long start = started();
+        ResourceFormatter formatter = formatters.getOrDefault(languageTag, formatters.get("en-GB"));
+        DiscountTotals discounts;
+        try {
+            readLock.lock();
+            discounts = index.getDiscounts();
+        } finally {
+            readLock.unlock();
         }
+        Map<String, String> result = new LinkedHashMap<>();
+        discounts.get(clock).forEach((rating, discount) ->
+                result.put(rating.getStars(), formatter.formatMoney(discount)));
+        finished(Metrics.Timer.GET_DISCOUNTS, start);
+        return result;
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.List;
+
+/**
+ * {@code ProductPage} is a page of products returned by
+ * {@link ProductManager#listProducts(ProductQuery, int)} together with
+ * a {@link Cursor} to the next page
+ */
+public class ProductPage {
+
+    private final List<Product> products;
+    private final Cursor next;
+
+    ProductPage(List<Product> products, Cursor next) {
+        this.products = products;
+        this.next = next;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * @return a cursor to the next page or {@code null} on the last page
+     */
+    public Cursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * {@code Cursor} is a position in a product listing
+     * <br>
+     * Listings ordered by an indexed property, or not ordered, remember
+     * the sort key of the last product and continue right after it, so
+     * products created or re-rated between pages are listed in their
+     * current position. Listings in other orders are served from the
+     * matching products captured for the first page.
+     */
+    public static final class Cursor {
+        private final ProductQuery query;
+        private final int remaining;
+        private final Object value;
+        private final int id;
+        private final List<Product> sorted;
+        private final int position;
+
+        private Cursor(ProductQuery query, int remaining, Object value, int id, List<Product> sorted, int position) {
+            this.query = query;
+            this.remaining = remaining;
+            this.value = value;
+            this.id = id;
+            this.sorted = sorted;
+            this.position = position;
+        }
+
+        static Cursor start(ProductQuery query) {
+            return new Cursor(query, query.getLimit(), null, 0, null, 0);
+        }
+
+        static Cursor after(Cursor cursor, Object value, int id, int listed) {
+            return new Cursor(cursor.query, cursor.remaining - listed, value, id, null, 0);
+        }
+
+        static Cursor at(Cursor cursor, List<Product> sorted, int position) {
+            return new Cursor(cursor.query, cursor.remaining, null, 0, sorted, position);
+        }
+
+        ProductQuery getQuery() {
+            return query;
+        }
+
+        int getRemaining() {
+            return remaining;
+        }
+
+        boolean hasPosition() {
+            return value != null;
+        }
+
+        Object getValue() {
+            return value;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        List<Product> getSorted() {
+            return sorted;
+        }
+
+        int getPosition() {
+            return position;
+        }
+    }
+}
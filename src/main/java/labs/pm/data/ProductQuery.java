@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ * {@code ProductQuery} describes a selection of products for
+ * {@link ProductManager#findProducts(ProductQuery)}
+ * <br>
+ * Price, rating and best-before ranges and ordering by these properties
+ * are served from indexes, bounds are inclusive and {@code null} bound
+ * means unbounded. Best-before range selects {@link Food} products only.
+ * <br>
+ * Any other filter or ordering is applied to the products selected by
+ * the ranges, or to all products when no range is set.
+ */
+public class ProductQuery {
+
+    /**
+     * Orderings served from indexes, products with equal values
+     * are ordered by id
+     */
+    public enum Order {
+        PRICE, RATING, BEST_BEFORE
+    }
+
+    // price bounds in cents, see Money
+    private Long minPrice;
+    private Long maxPrice;
+    private Rating minRating;
+    private Rating maxRating;
+    private LocalDate bestBeforeFrom;
+    private LocalDate bestBeforeTo;
+    private boolean bestBeforeRange;
+    private Predicate<Product> filter;
+    private Order order;
+    private boolean descending;
+    private Comparator<Product> sorter;
+    private int limit = Integer.MAX_VALUE;
+
+    public static ProductQuery all() {
+        return new ProductQuery();
+    }
+
+    public ProductQuery price(BigDecimal min, BigDecimal max) {
+        this.minPrice = (min != null) ? Money.of(min, RoundingMode.CEILING) : null;
+        this.maxPrice = (max != null) ? Money.of(max, RoundingMode.FLOOR) : null;
+        return this;
+    }
+
+    public ProductQuery rating(Rating min, Rating max) {
+        this.minRating = min;
+        this.maxRating = max;
+        return this;
+    }
+
+    public ProductQuery bestBefore(LocalDate from, LocalDate to) {
+        this.bestBeforeFrom = from;
+        this.bestBeforeTo = to;
+        this.bestBeforeRange = true;
+        return this;
+    }
+
+    public ProductQuery filter(Predicate<Product> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    public ProductQuery orderBy(Order order, boolean descending) {
+        this.order = order;
+        this.descending = descending;
+        this.sorter = null;
+        return this;
+    }
+
+    public ProductQuery orderBy(Comparator<Product> sorter) {
+        this.sorter = sorter;
+        this.order = null;
+        return this;
+    }
+
+    /**
+     * Limits the result to the first products in query order
+     */
+    public ProductQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    Long getMinPrice() {
+        return minPrice;
+    }
+
+    Long getMaxPrice() {
+        return maxPrice;
+    }
+
+    Rating getMinRating() {
+        return minRating;
+    }
+
+    Rating getMaxRating() {
+        return maxRating;
+    }
+
+    LocalDate getBestBeforeFrom() {
+        return bestBeforeFrom;
+    }
+
+    LocalDate getBestBeforeTo() {
+        return bestBeforeTo;
+    }
+
+    boolean hasPriceRange() {
+        return minPrice != null || maxPrice != null;
+    }
+
+    boolean hasRatingRange() {
+        return minRating != null || maxRating != null;
+    }
+
+    boolean hasBestBeforeRange() {
+        return bestBeforeRange;
+    }
+
+    Order getOrder() {
+        return order;
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Checks the product against all ranges and the filter
+     */
+    boolean test(Product product) {
+        if (minPrice != null && product.getPriceCents() < minPrice
+                || maxPrice != null && product.getPriceCents() > maxPrice) {
+            return false;
+        }
+        if (minRating != null && product.getRating().compareTo(minRating) < 0
+                || maxRating != null && product.getRating().compareTo(maxRating) > 0) {
+            return false;
+        }
+        if (bestBeforeRange) {
+            if (!(product instanceof Food)) {
+                return false;
+            }
+            LocalDate date = product.getBestBefore();
+            if (bestBeforeFrom != null && date.isBefore(bestBeforeFrom)
+                    || bestBeforeTo != null && date.isAfter(bestBeforeTo)) {
+                return false;
+            }
+        }
+        return filter == null || filter.test(product);
+    }
+
+    /**
+     * @return a comparator of the query order or {@code null} when unordered
+     */
+    Comparator<Product> comparator() {
+        if (sorter != null) {
+            return sorter;
+        }
+        if (order == null) {
+            return null;
+        }
+        Comparator<Product> comparator;
+        switch (order) {
+            case PRICE:
+                comparator = Comparator.comparingLong(Product::getPriceCents);
+                break;
+            case RATING:
+                comparator = Comparator.comparing(Product::getRating);
+                break;
+            default:
+                comparator = Comparator.comparing(Product::getBestBefore);
+        }
+        comparator = comparator.thenComparingInt(Product::getId);
+        return descending ? comparator.reversed() : comparator;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+/**
+ * {@code ProductReview} is a review of a product identified by its id,
+ * used to submit reviews in bulk to
+ * {@link ProductManager#reviewProducts(java.util.Collection)}
+ */
+public class ProductReview {
+
+    private final int productId;
+    private final Rating rating;
+    private final String comments;
+
+    public ProductReview(int productId, Rating rating, String comments) {
+        this.productId = productId;
+        this.rating = rating;
+        this.comments = comments;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public Rating getRating() {
+        return rating;
+    }
+
+    public String getComments() {
+        return comments;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductReview{" +
+                "productId=" + productId +
+                ", rating=" + rating +
+                ", comments='" + comments + '\'' +
+                '}';
+    }
+}
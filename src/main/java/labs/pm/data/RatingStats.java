@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * {@code RatingStats} keeps a running aggregate of review ratings
+ * of a product: number of reviews, sum of stars and a histogram
+ * of {@link Rating} values
+ * <br>
+ * Adding a review is O(1), so the average rating does not have to be
+ * recalculated over all reviews. This class is not thread-safe.
+ */
+class RatingStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long[] histogram = new long[Rating.values().length];
+    private long count;
+    private long sum;
+
+    RatingStats() {
+    }
+
+    RatingStats(RatingStats other) {
+        System.arraycopy(other.histogram, 0, histogram, 0, histogram.length);
+        count = other.count;
+        sum = other.sum;
+    }
+
+    static RatingStats of(Collection<Review> reviews) {
+        RatingStats stats = new RatingStats();
+        reviews.forEach(review -> stats.add(review.getRating()));
+        return stats;
+    }
+
+    void add(Rating rating) {
+        histogram[rating.ordinal()]++;
+        count++;
+        sum += rating.ordinal();
+    }
+
+    void add(Rating rating, long times) {
+        histogram[rating.ordinal()] += times;
+        count += times;
+        sum += rating.ordinal() * times;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getCount(Rating rating) {
+        return histogram[rating.ordinal()];
+    }
+
+    /**
+     * Calculates average rating rounded to the nearest star
+     * @return average {@link Rating}, or {@link Rating#NOT_RATED NOT_RATED}
+     * if there are no reviews
+     */
+    Rating getRating() {
+        return (count == 0) ? Rating.NOT_RATED : Rateable.convert((int) Math.round((double) sum / count));
+    }
+
+    @Override
+    public String toString() {
+        return "RatingStats{" +
+                "count=" + count +
+                ", sum=" + sum +
+                ", histogram=" + Arrays.toString(histogram) +
+                '}';
+    }
+}
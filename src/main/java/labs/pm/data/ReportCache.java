@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * {@code ReportCache} keeps rendered product report bodies in a bounded
+ * least recently used cache
+ * <br>
+ * Reports are keyed by product id, number of reviews, best before day and
+ * language tag. A new review changes the review count, so reports rendered
+ * before it are never served again and are evicted as they age out.
+ */
+class ReportCache {
+    private final int capacity;
+    private final Lock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Map<Key, String> reports;
+
+    ReportCache(int capacity) {
+        this.capacity = capacity;
+        this.reports = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                if (size() > ReportCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached report or renders and caches it, rendering
+     * happens outside of the cache lock
+     */
+    String get(int id, int version, long day, String languageTag, Supplier<String> renderer) {
+        if (capacity <= 0) {
+            misses.increment();
+            return renderer.get();
+        }
+        Key key = new Key(id, version, day, languageTag);
+        String report;
+        try {
+            lock.lock();
+            report = reports.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (report != null) {
+            hits.increment();
+            return report;
+        }
+        misses.increment();
+        report = renderer.get();
+        try {
+            lock.lock();
+            reports.put(key, report);
+        } finally {
+            lock.unlock();
+        }
+        return report;
+    }
+
+    Map<String, Long> getStats() {
+        int size;
+        try {
+            lock.lock();
+            size = reports.size();
+        } finally {
+            lock.unlock();
+        }
+        return Map.of("hits", hits.sum(),
+                "misses", misses.sum(),
+                "evictions", evictions.sum(),
+                "size", (long) size,
+                "capacity", (long) capacity);
+    }
+
+    private static final class Key {
+        private final int id;
+        private final int version;
+        private final long day;
+        private final String languageTag;
+
+        private Key(int id, int version, long day, String languageTag) {
+            this.id = id;
+            this.version = version;
+            this.day = day;
+            this.languageTag = languageTag;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o instanceof Key) {
+                Key key = (Key) o;
+                return id == key.id && version == key.version && day == key.day
+                        && languageTag.equals(key.languageTag);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, version, day, languageTag);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code ReportWriter} streams report text into a file in chunks
+ * <br>
+ * Text is appended to a {@link #buffer() character buffer}, which is encoded
+ * as UTF-8 into a pooled direct {@link ByteBuffer} and written to the file
+ * channel whenever it grows beyond {@link #CHUNK_SIZE} characters, so a report
+ * is never materialized in memory as a whole. Existing files are truncated.
+ * Writers beyond the pool size use heap buffers, so that many concurrent
+ * writers, such as clients on virtual threads, do not exhaust direct memory.
+ * Instances are not thread-safe.
+ */
+final class ReportWriter implements Closeable {
+    static final int CHUNK_SIZE = 8 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int POOL_SIZE = 16;
+    private static final BlockingQueue<Buffers> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private final FileChannel channel;
+    private Buffers buffers;
+
+    private ReportWriter(FileChannel channel, Buffers buffers) {
+        this.channel = channel;
+        this.buffers = buffers;
+    }
+
+    static ReportWriter open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Buffers buffers = pool.poll();
+        if (buffers == null) {
+            buffers = new Buffers(pooled.get() < POOL_SIZE && pooled.incrementAndGet() <= POOL_SIZE);
+        }
+        return new ReportWriter(channel, buffers);
+    }
+
+    /**
+     * @return a builder to append report text to
+     */
+    StringBuilder buffer() {
+        return buffers.text;
+    }
+
+    ReportWriter append(CharSequence text) throws IOException {
+        for (int start = 0; start < text.length(); start += CHUNK_SIZE) {
+            buffers.text.append(text, start, Math.min(start + CHUNK_SIZE, text.length()));
+            flushIfFull();
+        }
+        return this;
+    }
+
+    /**
+     * Writes buffered text to the file once it reaches the chunk size
+     */
+    void flushIfFull() throws IOException {
+        if (buffers.text.length() >= CHUNK_SIZE) {
+            encode(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffers == null) {
+            return;
+        }
+        try {
+            encode(true);
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                if (buffers.pooled) {
+                    buffers.reset();
+                    pool.offer(buffers);
+                }
+                buffers = null;
+            }
+        }
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        StringBuilder text = buffers.text;
+        CharBuffer chars = CharBuffer.wrap(text);
+        ByteBuffer bytes = buffers.bytes;
+        CharsetEncoder encoder = buffers.encoder;
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                write(bytes);
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                write(bytes);
+            }
+        }
+        write(bytes);
+        // a trailing high surrogate stays unconsumed until its pair arrives
+        text.delete(0, chars.position());
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private static final class Buffers {
+        private final StringBuilder text = new StringBuilder(CHUNK_SIZE * 2);
+        private final boolean pooled;
+        private final ByteBuffer bytes;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+        private Buffers(boolean pooled) {
+            this.pooled = pooled;
+            bytes = pooled ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        private void reset() {
+            text.setLength(0);
+            bytes.clear();
+            encoder.reset();
+        }
+    }
+}
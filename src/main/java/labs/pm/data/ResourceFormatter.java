@@ -0,0 +1,222 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.math.BigDecimal;
+import java.text.FieldPosition;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@code ResourceFormatter} formats products and reviews for a locale
+ * using patterns of the {@code resources} bundle
+ * <br>
+ * Patterns are compiled once into literal text and argument positions and
+ * rendered straight into a caller supplied {@link StringBuilder}. Instances
+ * are safe for concurrent use: money is formatted with copies of the locale
+ * {@link NumberFormat} taken from a small pool, so that clients running on
+ * many virtual threads do not each clone their own format.
+ */
+class ResourceFormatter {
+    private static final int POOL_SIZE = 16;
+    private final ResourceBundle resourceBundle;
+    private final DateTimeFormatter dateFormat;
+    private final NumberFormat moneyFormat;
+    private final BlockingQueue<MoneyBuffer> moneyBuffers = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final Template productTemplate;
+    private final Template reviewTemplate;
+
+    ResourceFormatter(Locale locale) {
+        resourceBundle = ResourceBundle.getBundle("resources", locale);
+        dateFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).localizedBy(locale);
+        moneyFormat = NumberFormat.getCurrencyInstance(locale);
+        productTemplate = Template.compile(resourceBundle.getString("product"), locale);
+        reviewTemplate = Template.compile(resourceBundle.getString("review"), locale);
+    }
+
+    String formatProduct(Product product) {
+        return formatProduct(product, new StringBuilder(64)).toString();
+    }
+
+    /**
+     * Appends name, price, rating and best before date of the product
+     * @return the given builder
+     */
+    StringBuilder formatProduct(Product product, StringBuilder txt) {
+        if (productTemplate.fallback != null) {
+            return txt.append(productTemplate.format(product.getName(), formatMoney(product.getPrice()),
+                    product.getRating().getStars(), dateFormat.format(product.getBestBefore())));
+        }
+        for (int i = 0; i < productTemplate.arguments.length; i++) {
+            txt.append(productTemplate.literals[i]);
+            switch (productTemplate.arguments[i]) {
+                case 0:
+                    txt.append(product.getName());
+                    break;
+                case 1:
+                    appendMoney(product.getPrice(), txt);
+                    break;
+                case 2:
+                    txt.append(product.getRating().getStars());
+                    break;
+                case 3:
+                    dateFormat.formatTo(product.getBestBefore(), txt);
+                    break;
+                default:
+                    productTemplate.appendMissing(i, txt);
+            }
+        }
+        return txt.append(productTemplate.literals[productTemplate.arguments.length]);
+    }
+
+    String formatReview(Review review) {
+        return formatReview(review, new StringBuilder(64)).toString();
+    }
+
+    /**
+     * Appends rating and comments of the review
+     * @return the given builder
+     */
+    StringBuilder formatReview(Review review, StringBuilder txt) {
+        if (reviewTemplate.fallback != null) {
+            return txt.append(reviewTemplate.format(review.getRating().getStars(), review.getComments()));
+        }
+        for (int i = 0; i < reviewTemplate.arguments.length; i++) {
+            txt.append(reviewTemplate.literals[i]);
+            switch (reviewTemplate.arguments[i]) {
+                case 0:
+                    txt.append(review.getRating().getStars());
+                    break;
+                case 1:
+                    txt.append(review.getComments());
+                    break;
+                default:
+                    reviewTemplate.appendMissing(i, txt);
+            }
+        }
+        return txt.append(reviewTemplate.literals[reviewTemplate.arguments.length]);
+    }
+
+    String formatMoney(Object amount) {
+        return appendMoney(amount, new StringBuilder(16)).toString();
+    }
+
+    StringBuilder appendMoney(Object amount, StringBuilder txt) {
+        MoneyBuffer buffer = moneyBuffers.poll();
+        if (buffer == null) {
+            buffer = new MoneyBuffer((NumberFormat) moneyFormat.clone());
+        }
+        buffer.text.setLength(0);
+        buffer.format.format(amount, buffer.text, buffer.position);
+        txt.append(buffer.text);
+        // dropped when the pool is full
+        moneyBuffers.offer(buffer);
+        return txt;
+    }
+
+    String getText(String key) {
+        return resourceBundle.getString(key);
+    }
+
+    /**
+     * Pooled money format with its reusable output buffer
+     */
+    private static final class MoneyBuffer {
+        private final NumberFormat format;
+        private final StringBuffer text = new StringBuffer(16);
+        private final FieldPosition position = new FieldPosition(0);
+
+        private MoneyBuffer(NumberFormat format) {
+            this.format = format;
+        }
+    }
+
+    /**
+     * A {@link MessageFormat} pattern compiled into literal text and argument
+     * indexes, {@code literals[i]} precedes {@code arguments[i]} and the last
+     * literal follows the last argument
+     * <br>
+     * Patterns with formatted arguments such as {@code {0,number}} are
+     * kept as a {@code fallback} pattern and formatted by {@link MessageFormat}.
+     */
+    static final class Template {
+        private final String[] literals;
+        private final int[] arguments;
+        private final String fallback;
+        private final Locale locale;
+
+        private Template(String[] literals, int[] arguments, String fallback, Locale locale) {
+            this.literals = literals;
+            this.arguments = arguments;
+            this.fallback = fallback;
+            this.locale = locale;
+        }
+
+        static Template compile(String pattern, Locale locale) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> arguments = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '\'') {
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                        literal.append('\'');
+                        i++;
+                    } else {
+                        quoted = !quoted;
+                    }
+                } else if (c == '{' && !quoted) {
+                    int end = pattern.indexOf('}', i);
+                    String argument = (end < 0) ? "" : pattern.substring(i + 1, end);
+                    if (argument.isEmpty() || !argument.chars().allMatch(Character::isDigit)) {
+                        return new Template(null, null, pattern, locale);
+                    }
+                    literals.add(literal.toString());
+                    arguments.add(Integer.parseInt(argument));
+                    literal.setLength(0);
+                    i = end;
+                } else {
+                    literal.append(c);
+                }
+            }
+            literals.add(literal.toString());
+            return new Template(literals.toArray(new String[0]),
+                    arguments.stream().mapToInt(Integer::intValue).toArray(), null, locale);
+        }
+
+        private String format(Object... values) {
+            return new MessageFormat(fallback, locale).format(values);
+        }
+
+        private void appendMissing(int i, StringBuilder txt) {
+            txt.append('{').append(arguments[i]).append('}');
+        }
+    }
+}
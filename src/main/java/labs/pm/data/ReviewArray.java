@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@code ReviewArray} stores reviews of a product compactly, ratings as
+ * bytes and comments shared through a {@link CommentInterner}
+ * <br>
+ * {@link Review} objects are created when the list returned by
+ * {@link #view(int)} is read. Slots are written once, a larger array is
+ * a copy, so a view of the slots written so far never changes.
+ */
+final class ReviewArray {
+    static final ReviewArray EMPTY = new ReviewArray(0);
+    private static final Rating[] RATINGS = Rating.values();
+
+    private final byte[] ratings;
+    private final String[] comments;
+
+    ReviewArray(int capacity) {
+        ratings = new byte[capacity];
+        comments = new String[capacity];
+    }
+
+    private ReviewArray(byte[] ratings, String[] comments) {
+        this.ratings = ratings;
+        this.comments = comments;
+    }
+
+    int capacity() {
+        return ratings.length;
+    }
+
+    /**
+     * Returns an array of the given capacity with the same reviews
+     */
+    ReviewArray grow(int capacity) {
+        return new ReviewArray(Arrays.copyOf(ratings, capacity), Arrays.copyOf(comments, capacity));
+    }
+
+    /**
+     * Copies {@code count} slots of another array starting at {@code from}
+     * into slots of this array starting at {@code to}
+     */
+    void copy(ReviewArray other, int from, int to, int count) {
+        System.arraycopy(other.ratings, from, ratings, to, count);
+        System.arraycopy(other.comments, from, comments, to, count);
+    }
+
+    void set(int index, Review review, CommentInterner interner) {
+        ratings[index] = (byte) review.getRating().ordinal();
+        comments[index] = interner.intern(review.getComments());
+    }
+
+    Rating getRating(int index) {
+        return RATINGS[ratings[index]];
+    }
+
+    /**
+     * @return an unmodifiable {@link java.util.List List} of the first
+     * {@code count} reviews
+     */
+    List<Review> view(int count) {
+        return new View(this, count);
+    }
+
+    private static final class View extends AbstractList<Review> implements RandomAccess {
+        private final ReviewArray array;
+        private final int count;
+
+        private View(ReviewArray array, int count) {
+            this.array = array;
+            this.count = count;
+        }
+
+        @Override
+        public Review get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + count);
+            }
+            return new Review(array.getRating(index), array.comments[index]);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
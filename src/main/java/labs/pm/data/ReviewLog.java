@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@code ReviewLog} is a single append-only binary file holding
+ * reviews of all products
+ * <br>
+ * The file starts with a {@link #MAGIC magic number} and a format version,
+ * followed by records of rating ordinal (byte), product id (int),
+ * comment length (int) and UTF-8 bytes of the comment, a missing comment
+ * has length -1 and no bytes.
+ * <br>
+ * Existing records are read through a memory-mapped {@link FileChannel},
+ * a torn record left at the end of the file by an interrupted write
+ * is cut off before new records are appended.
+ */
+class ReviewLog implements Closeable {
+    private static final Logger logger = Logger.getLogger(ReviewLog.class.getName());
+    static final int MAGIC = 0x504D524C;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int RECORD_HEADER_SIZE = 1 + Integer.BYTES * 2;
+    private static final int NULL_LENGTH = -1;
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final Path file;
+    private final Lock lock = new ReentrantLock();
+    private FileChannel channel;
+
+    ReviewLog(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Opens the log, creating it if necessary, passes every stored review
+     * with its product id to the consumer and prepares the log for appending
+     * @return number of reviews read
+     */
+    long open(ObjIntConsumer<Review> consumer) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long count = 0;
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(channel, header);
+            } else {
+                Reader reader = new Reader(channel);
+                count = reader.readAll(consumer);
+                if (reader.position < channel.size()) {
+                    logger.log(Level.WARNING, "Truncating torn review record at " + reader.position + " in " + file);
+                    channel.truncate(reader.position);
+                }
+            }
+            channel.position(channel.size());
+            this.channel = channel;
+            return count;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    void append(int productId, Review review) throws IOException {
+        byte[] comments = (review.getComments() != null)
+                ? review.getComments().getBytes(StandardCharsets.UTF_8) : null;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + ((comments != null) ? comments.length : 0))
+                .put((byte) review.getRating().ordinal())
+                .putInt(productId)
+                .putInt((comments != null) ? comments.length : NULL_LENGTH);
+        if (comments != null) {
+            record.put(comments);
+        }
+        record.flip();
+        try {
+            lock.lock();
+            if (channel == null) {
+                throw new IOException("Review log " + file + " is not open");
+            }
+            writeFully(channel, record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.lock();
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads records through a window mapped over the file, the window is
+     * moved forward whenever the next record does not fit into it
+     */
+    private class Reader {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+        private byte[] text = new byte[256];
+
+        private Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        private long readAll(ObjIntConsumer<Review> consumer) throws IOException {
+            if (!ensure(HEADER_SIZE)) {
+                throw new IOException("Review log " + file + " has no header");
+            }
+            int magic = window.getInt();
+            int version = window.getInt();
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException("Review log " + file + " has unsupported format " + version);
+            }
+            position += HEADER_SIZE;
+            long count = 0;
+            Rating[] ratings = Rating.values();
+            while (ensure(RECORD_HEADER_SIZE)) {
+                int rating = window.get();
+                int productId = window.getInt();
+                int length = window.getInt();
+                int bytes = Math.max(length, 0);
+                if (rating < 0 || rating >= ratings.length || length < NULL_LENGTH
+                        || !ensure(RECORD_HEADER_SIZE + bytes)) {
+                    break;
+                }
+                window.position(window.position() + RECORD_HEADER_SIZE);
+                String comments = null;
+                if (length != NULL_LENGTH) {
+                    if (text.length < length) {
+                        text = new byte[Math.max(length, text.length * 2)];
+                    }
+                    window.get(text, 0, length);
+                    comments = new String(text, 0, length, StandardCharsets.UTF_8);
+                }
+                consumer.accept(new Review(ratings[rating], comments), productId);
+                position += RECORD_HEADER_SIZE + bytes;
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Makes sure that bytes at the current position are mapped,
+         * leaves the window positioned at the current position
+         * @return false if the file ends before
+         */
+        private boolean ensure(long bytes) throws IOException {
+            if (position + bytes > size) {
+                return false;
+            }
+            if (window == null || position + bytes > windowStart + window.capacity()) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(size - position, Math.max(WINDOW_SIZE, bytes)));
+            }
+            window.position((int) (position - windowStart));
+            return true;
+        }
+    }
+}
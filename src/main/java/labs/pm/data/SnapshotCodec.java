@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@code SnapshotCodec} writes and reads snapshots of products, their reviews
+ * and rating aggregates in a compact versioned binary format
+ * <br>
+ * A snapshot starts with a {@link #MAGIC magic number}, format version,
+ * flags and the number of journal records it holds, followed by the body, optionally deflate compressed. The body holds
+ * the number of products, then for each product its type, id, name, price as
+ * scale and unscaled value, rating, best before epoch day for food, rating
+ * histogram and reviews as rating and length prefixed UTF-8 comment,
+ * a missing comment has length -1.
+ */
+final class SnapshotCodec {
+    static final int MAGIC = 0x504D534E;
+    static final int VERSION = 2;
+    // version 1 header has no number of journal records
+    private static final int VERSION_1 = 1;
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int NULL_LENGTH = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte DRINK = 'D';
+    private static final byte FOOD = 'F';
+
+    private SnapshotCodec() {
+    }
+
+    static void write(Path file, Map<Product, List<Review>> data, Map<Integer, RatingStats> stats,
+                      boolean compress) throws IOException {
+        write(file, data, stats, compress, 0);
+    }
+
+    /**
+     * @param journalSequence number of journal records whose effects the data holds
+     */
+    static void write(Path file, Map<Product, List<Review>> data, Map<Integer, RatingStats> stats,
+                      boolean compress, long journalSequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(Channels.newOutputStream(channel), data, stats, compress, journalSequence);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * @return number of journal records whose effects the data holds
+     */
+    static long read(Path file, Map<Product, List<Review>> data, Map<Integer, RatingStats> stats,
+                     StandardOpenOption... options) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            return read(Channels.newInputStream(channel), data, stats);
+        }
+    }
+
+    /**
+     * Writes a snapshot, the stream is flushed but not closed
+     */
+    static void write(OutputStream stream, Map<Product, List<Review>> data, Map<Integer, RatingStats> stats,
+                      boolean compress) throws IOException {
+        write(stream, data, stats, compress, 0);
+    }
+
+    static void write(OutputStream stream, Map<Product, List<Review>> data, Map<Integer, RatingStats> stats,
+                      boolean compress, long journalSequence) throws IOException {
+        DataOutputStream header = new DataOutputStream(stream);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeByte(compress ? FLAG_COMPRESSED : 0);
+        header.writeLong(journalSequence);
+        header.flush();
+        DeflaterOutputStream deflater = compress
+                ? new DeflaterOutputStream(stream, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE) : null;
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream((deflater != null) ? deflater : stream, BUFFER_SIZE));
+        Rating[] ratings = Rating.values();
+        out.writeInt(data.size());
+        for (Map.Entry<Product, List<Review>> entry : data.entrySet()) {
+            Product product = entry.getKey();
+            boolean food = product instanceof Food;
+            out.writeByte(food ? FOOD : DRINK);
+            out.writeInt(product.getId());
+            writeString(out, product.getName());
+            Journal.writeDecimal(out, product.getPrice());
+            out.writeByte(product.getRating().ordinal());
+            if (food) {
+                out.writeLong(product.getBestBefore().toEpochDay());
+            }
+            RatingStats rating = stats.get(product.getId());
+            List<Review> reviews = entry.getValue();
+            if (rating == null) {
+                rating = RatingStats.of(reviews);
+            }
+            for (Rating value : ratings) {
+                out.writeLong(rating.getCount(value));
+            }
+            out.writeInt(reviews.size());
+            for (Review review : reviews) {
+                out.writeByte(review.getRating().ordinal());
+                writeString(out, review.getComments());
+            }
+        }
+        out.flush();
+        if (deflater != null) {
+            deflater.finish();
+        }
+        stream.flush();
+    }
+
+    static long read(InputStream stream, Map<Product, List<Review>> data,
+                     Map<Integer, RatingStats> stats) throws IOException {
+        DataInputStream header = new DataInputStream(stream);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a product snapshot");
+        }
+        int version = header.readInt();
+        if (version != VERSION && version != VERSION_1) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        boolean compressed = (header.readByte() & FLAG_COMPRESSED) != 0;
+        long journalSequence = (version == VERSION) ? header.readLong() : 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                compressed ? new InflaterInputStream(stream) : stream, BUFFER_SIZE));
+        Rating[] ratings = Rating.values();
+        byte[] buffer = new byte[256];
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            int id = in.readInt();
+            String name = readString(in, buffer);
+            BigDecimal price = Journal.readDecimal(in);
+            Rating rating = Rateable.convert(in.readByte());
+            Product product;
+            switch (type) {
+                case DRINK:
+                    product = new Drink(id, name, price, rating);
+                    break;
+                case FOOD:
+                    product = new Food(id, name, price, rating, LocalDate.ofEpochDay(in.readLong()));
+                    break;
+                default:
+                    throw new IOException("Unknown product type " + type);
+            }
+            RatingStats histogram = new RatingStats();
+            for (Rating value : ratings) {
+                histogram.add(value, in.readLong());
+            }
+            int reviewCount = in.readInt();
+            List<Review> reviews = new ArrayList<>(reviewCount);
+            for (int r = 0; r < reviewCount; r++) {
+                Rating stars = Rateable.convert(in.readByte());
+                reviews.add(new Review(stars, readString(in, buffer)));
+            }
+            data.put(product, reviews);
+            stats.put(id, histogram);
+        }
+        return journalSequence;
+    }
+
+    /*
+     * Writes a length prefixed UTF-8 string, null as length -1
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in, byte[] buffer) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = (length <= buffer.length) ? buffer : new byte[length];
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
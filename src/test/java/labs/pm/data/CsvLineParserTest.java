@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvLineParserTest {
+    private final CsvLineParser parser = new CsvLineParser();
+
+    @Test
+    void readsProductFields() throws ParseException {
+        parser.reset("F, 103, Cake, 3.99, 4, 2021-04-19");
+        assertEquals('F', parser.nextChar());
+        assertEquals(103, parser.nextInt());
+        assertEquals("Cake", parser.nextString());
+        assertEquals(new BigDecimal("3.99"), parser.nextDecimal());
+        assertEquals(4, parser.nextInt());
+        assertEquals(LocalDate.of(2021, 4, 19), parser.nextDate());
+        assertFalse(parser.hasNext());
+    }
+
+    @Test
+    void keepsDecimalScale() throws ParseException {
+        assertEquals(new BigDecimal("2.50"), parser.reset("2.50").nextDecimal());
+        assertEquals(new BigDecimal("-7"), parser.reset("-7").nextDecimal());
+        assertEquals(new BigDecimal("12345678901234567890.12"), parser.reset("12345678901234567890.12").nextDecimal());
+    }
+
+    @Test
+    void readsQuotedStrings() throws ParseException {
+        parser.reset("\"Tea, green\", \"Say \"\"hi\"\"\", plain");
+        assertEquals("Tea, green", parser.nextString());
+        assertEquals("Say \"hi\"", parser.nextString());
+        assertEquals("plain", parser.nextString());
+    }
+
+    @Test
+    void remainingKeepsCommas() throws ParseException {
+        parser.reset("4, Nice, but too hot");
+        assertEquals(4, parser.nextInt());
+        assertEquals("Nice, but too hot", parser.remaining());
+    }
+
+    @Test
+    void remainingUnquotesQuotedField() throws ParseException {
+        parser.reset("4, \"Nice, \"\"really\"\"\"  ");
+        assertEquals(4, parser.nextInt());
+        assertEquals("Nice, \"really\"", parser.remaining());
+    }
+
+    @Test
+    void remainingKeepsTextStartingWithQuote() throws ParseException {
+        parser.reset("4, \"Best\" coffee ever");
+        assertEquals(4, parser.nextInt());
+        assertEquals("\"Best\" coffee ever", parser.remaining());
+        parser.reset("4, \"unterminated");
+        assertEquals(4, parser.nextInt());
+        assertEquals("\"unterminated", parser.remaining());
+    }
+
+    @Test
+    void remainingOfEmptyTail() throws ParseException {
+        parser.reset("5,");
+        assertEquals(5, parser.nextInt());
+        assertEquals("", parser.remaining());
+    }
+
+    @Test
+    void rejectsMalformedFields() {
+        assertThrows(ParseException.class, () -> parser.reset("x").nextInt());
+        assertThrows(ParseException.class, () -> parser.reset("2147483648").nextInt());
+        assertThrows(ParseException.class, () -> parser.reset("12 3").nextInt());
+        assertThrows(ParseException.class, () -> parser.reset("abc").nextDecimal());
+        assertThrows(ParseException.class, () -> parser.reset("2021-02-30").nextDate());
+        assertThrows(ParseException.class, () -> parser.reset("2021/02/01").nextDate());
+        assertThrows(ParseException.class, () -> parser.reset("\"open").nextString());
+        assertThrows(ParseException.class, () -> parser.reset("").nextChar());
+    }
+
+    @Test
+    void parsesIntegerBounds() throws ParseException {
+        assertEquals(Integer.MIN_VALUE, parser.reset("-2147483648").nextInt());
+        assertEquals(Integer.MAX_VALUE, parser.reset("2147483647").nextInt());
+    }
+
+    @Test
+    void matchesParseReview() {
+        ProductManager pm = ProductManager.getInstance();
+        Review review = pm.parseReview("4, \"Best\" coffee ever");
+        assertNotNull(review);
+        assertEquals(Rating.FOUR_STAR, review.getRating());
+        assertEquals("\"Best\" coffee ever", review.getComments());
+    }
+}
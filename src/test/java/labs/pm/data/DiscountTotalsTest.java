@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiscountTotalsTest {
+    private static final LocalDate DAY = LocalDate.of(2021, 4, 19);
+    private static final BigDecimal DRINK_DISCOUNT = new BigDecimal("1.00");
+    private static final BigDecimal FOOD_DISCOUNT = new BigDecimal("2.00");
+
+    private final MutableClock clock = new MutableClock();
+    private final DiscountTotals totals = new DiscountTotals();
+
+    DiscountTotalsTest() {
+        totals.add(new Drink(1, "Tea", new BigDecimal("10.00"), Rating.FOUR_STAR));
+        totals.add(new Food(2, "Cake", new BigDecimal("20.00"), Rating.FOUR_STAR, DAY));
+    }
+
+    private BigDecimal at(LocalDateTime time) {
+        clock.time = time;
+        Map<Rating, BigDecimal> discounts = totals.get(clock);
+        assertEquals(1, discounts.size());
+        return discounts.get(Rating.FOUR_STAR);
+    }
+
+    @Test
+    void drinksAreDiscountedInsideTheWindow() {
+        LocalDateTime from = DAY.plusDays(1).atTime(Drink.DISCOUNT_FROM);
+        LocalDateTime until = DAY.plusDays(1).atTime(Drink.DISCOUNT_UNTIL);
+        assertEquals(new BigDecimal("0.00"), at(from.minusNanos(1)));
+        assertEquals(new BigDecimal("0.00"), at(from));
+        assertEquals(DRINK_DISCOUNT, at(from.plusNanos(1)));
+        assertEquals(DRINK_DISCOUNT, at(until.minusNanos(1)));
+        assertEquals(new BigDecimal("0.00"), at(until));
+        assertEquals(new BigDecimal("0.00"), at(until.plusHours(5)));
+    }
+
+    @Test
+    void foodIsDiscountedOnItsBestBeforeDay() {
+        assertEquals(new BigDecimal("0.00"), at(DAY.atStartOfDay().minusNanos(1)));
+        assertEquals(FOOD_DISCOUNT, at(DAY.atStartOfDay()));
+        assertEquals(FOOD_DISCOUNT, at(DAY.atTime(12, 0)));
+        assertEquals(FOOD_DISCOUNT.add(DRINK_DISCOUNT), at(DAY.atTime(18, 0)));
+        assertEquals(FOOD_DISCOUNT, at(DAY.plusDays(1).atStartOfDay().minusNanos(1)));
+        assertEquals(new BigDecimal("0.00"), at(DAY.plusDays(1).atStartOfDay()));
+    }
+
+    @Test
+    void changesAreSeenBeforeTheWindowCloses() {
+        assertEquals(FOOD_DISCOUNT, at(DAY.atTime(9, 0)));
+        totals.add(new Food(3, "Pie", new BigDecimal("5.00"), Rating.FOUR_STAR, DAY));
+        assertEquals(new BigDecimal("2.50"), at(DAY.atTime(9, 0)));
+    }
+
+    @Test
+    void pastDaysAreDropped() {
+        totals.add(new Food(3, "Pie", new BigDecimal("5.00"), Rating.FOUR_STAR, DAY.plusDays(1)));
+        at(DAY.atTime(9, 0));
+        assertEquals(2, totals.foodDates());
+        at(DAY.plusDays(1).atStartOfDay());
+        assertEquals(1, totals.foodDates());
+        at(DAY.plusDays(2).atStartOfDay());
+        assertEquals(0, totals.foodDates());
+    }
+
+    private static final class MutableClock extends Clock {
+        private LocalDateTime time;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return time.toInstant(ZoneOffset.UTC);
+        }
+    }
+}
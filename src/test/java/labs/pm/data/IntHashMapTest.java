@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntHashMapTest {
+
+    @Test
+    void putReplacesAndReturnsPrevious() {
+        IntHashMap<String> map = new IntHashMap<>();
+        assertNull(map.put(7, "a"));
+        assertEquals("a", map.put(7, "b"));
+        assertEquals("b", map.get(7));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void missingKeys() {
+        IntHashMap<String> map = new IntHashMap<>(0);
+        assertNull(map.get(1));
+        assertFalse(map.containsKey(1));
+        map.put(0, "zero");
+        assertTrue(map.containsKey(0));
+        assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    void growsAndMatchesHashMap() {
+        IntHashMap<Integer> map = new IntHashMap<>(2);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int key = (i % 3 == 0) ? random.nextInt() : i * 16;
+            map.put(key, i);
+            expected.put(key, i);
+        }
+        map.put(Integer.MIN_VALUE, -1);
+        expected.put(Integer.MIN_VALUE, -1);
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        List<Integer> values = new ArrayList<>();
+        map.forEach(values::add);
+        assertEquals(expected.size(), values.size());
+        assertTrue(values.containsAll(expected.values()));
+    }
+}
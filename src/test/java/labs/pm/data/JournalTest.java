@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    private final List<Product> products = new ArrayList<>();
+    private final List<Integer> ids = new ArrayList<>();
+    private final List<Review> reviews = new ArrayList<>();
+
+    private final Journal.Replay replay = new Journal.Replay() {
+        @Override
+        public void product(Product product) {
+            products.add(product);
+        }
+
+        @Override
+        public void review(int id, Review review) {
+            ids.add(id);
+            reviews.add(review);
+        }
+    };
+
+    @Test
+    void replaysRecords() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        String longComment = "é".repeat(100_000);
+        try (Journal journal = new Journal(file, 1, 10)) {
+            assertEquals(0, journal.open(replay));
+            journal.logProduct(new Food(1, "Cake", new BigDecimal("3.99"), Rating.FOUR_STAR, LocalDate.of(2021, 4, 19)));
+            journal.logProduct(new Drink(2, "Tea", new BigDecimal("1.50"), Rating.NOT_RATED));
+            journal.logReview(1, new Review(Rating.FIVE_STAR, "Lovely"));
+            journal.logReview(2, new Review(Rating.ONE_STAR, null));
+            journal.logReview(2, new Review(Rating.TWO_STAR, longComment));
+        }
+        assertEquals(5, reopen(file, 0));
+        Product cake = products.get(0);
+        assertTrue(cake instanceof Food);
+        assertEquals("Cake", cake.getName());
+        assertEquals(new BigDecimal("3.99"), cake.getPrice());
+        assertEquals(Rating.FOUR_STAR, cake.getRating());
+        assertEquals(LocalDate.of(2021, 4, 19), cake.getBestBefore());
+        assertTrue(products.get(1) instanceof Drink);
+        assertEquals(new BigDecimal("1.50"), products.get(1).getPrice());
+        assertEquals(List.of(1, 2, 2), ids);
+        assertEquals("Lovely", reviews.get(0).getComments());
+        assertNull(reviews.get(1).getComments());
+        assertEquals(Rating.ONE_STAR, reviews.get(1).getRating());
+        assertEquals(longComment, reviews.get(2).getComments());
+    }
+
+    @Test
+    void replaysMissingAndLongNames() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        String longName = "名".repeat(30_000);
+        try (Journal journal = new Journal(file, 1, 10)) {
+            journal.open(replay);
+            journal.logProduct(new Drink(1, null, new BigDecimal("1.00"), Rating.NOT_RATED));
+            journal.logProduct(new Food(2, longName, new BigDecimal("2.00"), Rating.NOT_RATED, LocalDate.of(2021, 1, 1)));
+        }
+        assertEquals(2, reopen(file, 0));
+        assertNull(products.get(0).getName());
+        assertEquals(longName, products.get(1).getName());
+        assertEquals(LocalDate.of(2021, 1, 1), products.get(1).getBestBefore());
+    }
+
+    @Test
+    void truncatesTornTail() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (Journal journal = new Journal(file, 1, 10)) {
+            journal.open(replay);
+            journal.logReview(1, new Review(Rating.THREE_STAR, "one"));
+            journal.logReview(1, new Review(Rating.THREE_STAR, "two"));
+        }
+        long complete = Files.size(file);
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (Journal journal = new Journal(file, 1, 10)) {
+            assertEquals(2, journal.open(replay));
+            assertEquals(complete, Files.size(file));
+            journal.logReview(1, new Review(Rating.THREE_STAR, "three"));
+        }
+        reviews.clear();
+        assertEquals(3, reopen(file, 0));
+        assertEquals("three", reviews.get(2).getComments());
+    }
+
+    @Test
+    void stopsAtCorruptRecord() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (Journal journal = new Journal(file, 1, 10)) {
+            journal.open(replay);
+            journal.logReview(1, new Review(Rating.THREE_STAR, "one"));
+            journal.logReview(1, new Review(Rating.THREE_STAR, "two"));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+        assertEquals(1, reopen(file, 0));
+        assertEquals(List.of("one"), comments());
+        assertEquals(bytes.length - (Integer.BYTES * 2 + 1 + Integer.BYTES * 2 + 1 + "two".length()), Files.size(file));
+    }
+
+    @Test
+    void checkpointDiscardsMarkedRecords() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (Journal journal = new Journal(file, 1, 10)) {
+            journal.open(replay);
+            journal.logReview(1, new Review(Rating.ONE_STAR, "one"));
+            journal.logReview(1, new Review(Rating.TWO_STAR, "two"));
+            Journal.Mark mark = journal.mark();
+            assertEquals(2, mark.getSequence());
+            journal.logReview(1, new Review(Rating.THREE_STAR, "three"));
+            journal.checkpoint(mark);
+            journal.logReview(1, new Review(Rating.FOUR_STAR, "four"));
+        }
+        assertEquals(2, reopen(file, 2));
+        assertEquals(List.of("three", "four"), comments());
+        reviews.clear();
+        assertEquals(1, reopen(file, 3));
+        assertEquals(List.of("four"), comments());
+    }
+
+    @Test
+    void skipsRecordsHeldBySnapshot() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        try (Journal journal = new Journal(file, 1, 10)) {
+            journal.open(replay);
+            journal.logReview(1, new Review(Rating.ONE_STAR, "one"));
+            journal.logReview(1, new Review(Rating.TWO_STAR, "two"));
+        }
+        try (Journal journal = new Journal(file, 1, 10)) {
+            assertEquals(1, journal.open(replay, 1));
+            assertEquals(2, journal.mark().getSequence());
+        }
+        assertEquals(List.of("two"), comments());
+    }
+
+    @Test
+    void replaysVersionOneRecords() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Journal.MAGIC);
+        out.writeInt(1);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(payload);
+        record.writeByte('F');
+        record.writeInt(7);
+        record.writeUTF("Cake");
+        Journal.writeDecimal(record, new BigDecimal("3.99"));
+        record.writeByte(Rating.NOT_RATED.ordinal());
+        record.writeLong(LocalDate.of(2021, 4, 19).toEpochDay());
+        writeRecord(out, payload.toByteArray());
+        payload.reset();
+        record.writeByte('D');
+        record.writeInt(8);
+        record.writeUTF("Tea");
+        Journal.writeDecimal(record, new BigDecimal("1.99"));
+        record.writeByte(Rating.NOT_RATED.ordinal());
+        writeRecord(out, payload.toByteArray());
+        payload.reset();
+        record.writeByte('R');
+        record.writeInt(7);
+        record.writeByte(Rating.FIVE_STAR.ordinal());
+        record.writeUTF("legacy");
+        writeRecord(out, payload.toByteArray());
+        Files.write(file, bytes.toByteArray());
+        try (Journal journal = new Journal(file, 1, 10)) {
+            assertEquals(3, journal.open(replay));
+            journal.logReview(7, new Review(Rating.ONE_STAR, "current"));
+        }
+        ids.clear();
+        reviews.clear();
+        products.clear();
+        assertEquals(4, reopen(file, 0));
+        assertEquals(2, products.size());
+        assertEquals("Cake", products.get(0).getName());
+        assertEquals(LocalDate.of(2021, 4, 19), products.get(0).getBestBefore());
+        assertEquals("Tea", products.get(1).getName());
+        assertTrue(products.get(1) instanceof Drink);
+        assertEquals(List.of(7, 7), ids);
+        assertEquals(List.of("legacy", "current"), comments());
+        assertEquals(Rating.FIVE_STAR, reviews.get(0).getRating());
+    }
+
+    @Test
+    void rejectsForeignFile() throws IOException {
+        Path file = dir.resolve("journal.bin");
+        Files.write(file, ByteBuffer.allocate(8).putInt(42).putInt(2).array());
+        Journal journal = new Journal(file, 1, 10);
+        assertThrows(IOException.class, () -> journal.open(replay));
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    private long reopen(Path file, long from) throws IOException {
+        try (Journal journal = new Journal(file, 1, 10)) {
+            return journal.open(replay, from);
+        }
+    }
+
+    private List<String> comments() {
+        List<String> comments = new ArrayList<>();
+        reviews.forEach(review -> comments.add(review.getComments()));
+        return comments;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductColumnsTest {
+
+    private static List<Product> products() {
+        List<Product> products = new ArrayList<>();
+        for (int id = 0; id < 100; id++) {
+            Rating rating = Rating.values()[id % 6];
+            BigDecimal price = BigDecimal.valueOf(id * 137L + 1, 2);
+            String name = (id % 10 == 0) ? null : (id % 3 == 0) ? "Shared ☕" : "Product " + id;
+            products.add((id % 2 == 0)
+                    ? new Drink(id * 7, name, price, rating)
+                    : new Food(id * 7, name, price, rating, LocalDate.of(2021, 1, 1).plusDays(id * 50L - 2_000)));
+        }
+        return products;
+    }
+
+    private static void assertProduct(Product expected, Product actual) {
+        assertTrue(expected.getClass().isInstance(actual));
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getPrice(), actual.getPrice());
+        assertEquals(expected.getBestBefore(), actual.getBestBefore());
+        assertEquals(expected.getRating(), actual.getRating());
+    }
+
+    @Test
+    void viewsReadAddedProducts() {
+        // a small expected size makes the columns and names grow
+        ProductColumns columns = new ProductColumns(1);
+        List<Product> products = products();
+        for (int row = 0; row < products.size(); row++) {
+            assertEquals(row, columns.add(products.get(row)));
+        }
+        assertEquals(products.size(), columns.size());
+        for (int row = 0; row < products.size(); row++) {
+            assertProduct(products.get(row), columns.get(row));
+        }
+    }
+
+    @Test
+    void ratingsChangeNewViewsOnly() {
+        ProductColumns columns = new ProductColumns(1);
+        columns.add(new Food(1, "Cake", new BigDecimal("3.99"), Rating.NOT_RATED, LocalDate.of(2021, 5, 1)));
+        Product before = columns.get(0);
+        columns.setRating(0, Rating.FOUR_STAR);
+        assertEquals(Rating.NOT_RATED, before.getRating());
+        assertEquals(Rating.FOUR_STAR, columns.get(0).getRating());
+        Product applied = before.applyRating(Rating.TWO_STAR);
+        assertEquals(Rating.TWO_STAR, applied.getRating());
+        assertEquals("Cake", applied.getName());
+        assertEquals(LocalDate.of(2021, 5, 1), applied.getBestBefore());
+    }
+
+    @Test
+    void viewsSerializeAsProducts() throws Exception {
+        ProductColumns columns = new ProductColumns(1);
+        List<Product> products = products();
+        products.forEach(columns::add);
+        List<Product> views = new ArrayList<>();
+        for (int row = 0; row < columns.size(); row++) {
+            views.add(columns.get(row));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(views);
+        }
+        List<?> read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (List<?>) in.readObject();
+        }
+        assertEquals(products.size(), read.size());
+        for (int i = 0; i < products.size(); i++) {
+            Product product = (Product) read.get(i);
+            assertEquals(products.get(i).getClass(), product.getClass());
+            assertProduct(products.get(i), product);
+        }
+    }
+}
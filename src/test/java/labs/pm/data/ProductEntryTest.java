@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductEntryTest {
+    private static final int REVIEWS = 20_000;
+
+    @Test
+    void captureMatchesReviews() throws InterruptedException {
+        assertConsistentCaptures(new ProductEntry(new Drink(1, "Tea", new BigDecimal("1.99"), Rating.NOT_RATED)));
+    }
+
+    @Test
+    void columnCaptureMatchesReviews() throws InterruptedException {
+        ProductColumns columns = new ProductColumns(1);
+        assertConsistentCaptures(new ColumnProductEntry(columns,
+                new Drink(1, "Tea", new BigDecimal("1.99"), Rating.NOT_RATED), null, null, null));
+    }
+
+    private static void assertConsistentCaptures(ProductEntry entry) throws InterruptedException {
+        ProductIndex index = new ProductIndex();
+        index.add(entry.getProduct());
+        Thread writer = new Thread(() -> {
+            Rating[] ratings = Rating.values();
+            for (int i = 0; i < REVIEWS; i++) {
+                entry.addReview(new Review(ratings[1 + ThreadLocalRandom.current().nextInt(5)], null), index);
+            }
+        });
+        writer.start();
+        int captured;
+        do {
+            ProductEntry.State state = entry.capture();
+            List<Review> reviews = state.getReviews();
+            captured = reviews.size();
+            assertEquals(RatingStats.of(reviews).getRating(), state.getProduct().getRating(),
+                    "rating of " + captured + " reviews");
+        } while (captured < REVIEWS);
+        writer.join();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductIndexTest {
+    private final ProductIndex index = new ProductIndex();
+    private final IntHashMap<ProductEntry> store = new IntHashMap<>();
+
+    private ProductEntry add(int id, Rating rating) {
+        Product product = new Drink(id, "Drink" + id, BigDecimal.valueOf(id), rating);
+        ProductEntry entry = new ProductEntry(product);
+        store.put(id, entry);
+        index.add(product);
+        return entry;
+    }
+
+    private List<Integer> ids(List<Product> products) {
+        return products.stream().map(Product::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void ratingChangeIsListedOnce() {
+        for (int id = 1; id <= 5; id++) {
+            add(id, Rating.values()[id]);
+        }
+        ProductEntry entry = store.get(2);
+        Product before = entry.getProduct();
+        Product after = before.applyRating(Rating.FIVE_STAR);
+        ProductQuery byRating = ProductQuery.all().orderBy(ProductQuery.Order.RATING, false);
+        ProductQuery ratingRange = ProductQuery.all().rating(Rating.ONE_STAR, Rating.FIVE_STAR);
+
+        index.ratingChanging(before, after);
+        assertEquals(List.of(1, 2, 3, 4, 5), ids(index.query(byRating, store)));
+        assertEquals(5, index.select(ratingRange, store).size());
+
+        entry.setProduct(after);
+        assertEquals(List.of(1, 3, 4, 2, 5), ids(index.query(byRating, store)));
+        assertEquals(5, index.select(ratingRange, store).size());
+
+        index.ratingChanged(before, after);
+        assertEquals(List.of(1, 3, 4, 2, 5), ids(index.query(byRating, store)));
+        assertEquals(List.of(2, 5), ids(index.query(ProductQuery.all()
+                .rating(Rating.FIVE_STAR, Rating.FIVE_STAR).orderBy(ProductQuery.Order.RATING, false), store)));
+    }
+
+    @Test
+    void reviewsKeepQueriesConsistent() throws InterruptedException {
+        for (int id = 1; id <= 200; id++) {
+            add(id, Rating.NOT_RATED);
+        }
+        Thread writer = new Thread(() -> {
+            Rating[] ratings = Rating.values();
+            for (int i = 0; i < 20_000; i++) {
+                store.get(1 + i % 200).addReview(new Review(ratings[1 + (i * 7) % 5], null), index);
+            }
+        });
+        writer.start();
+        ProductQuery byRating = ProductQuery.all().orderBy(ProductQuery.Order.RATING, true);
+        while (writer.isAlive()) {
+            List<Product> products = index.query(byRating, store);
+            assertEquals(products.size(), ids(products).stream().distinct().count());
+            for (int i = 1; i < products.size(); i++) {
+                assertTrue(products.get(i - 1).getRating().compareTo(products.get(i).getRating()) >= 0);
+            }
+        }
+        assertEquals(200, index.query(byRating, store).size());
+        writer.join();
+    }
+
+    private List<Integer> pages(ProductQuery query, int size) {
+        List<Integer> listed = new ArrayList<>();
+        ProductPage page = index.page(ProductPage.Cursor.start(query), size, store);
+        while (true) {
+            assertTrue(page.getProducts().size() <= size);
+            listed.addAll(ids(page.getProducts()));
+            if (!page.hasNext()) {
+                return listed;
+            }
+            assertEquals(size, page.getProducts().size());
+            page = index.page(page.getNext(), size, store);
+        }
+    }
+
+    @Test
+    void pagesListEveryProductOnce() {
+        for (int id = 1; id <= 50; id++) {
+            Product product = new Food(id, "Food" + id, BigDecimal.valueOf((id * 37) % 11),
+                    Rating.values()[id % 6], LocalDate.of(2021, 1, 1).plusDays((id * 13) % 7));
+            store.put(id, new ProductEntry(product));
+            index.add(product);
+        }
+        LocalDate from = LocalDate.of(2021, 1, 1);
+        for (boolean descending : new boolean[]{false, true}) {
+            for (ProductQuery.Order order : ProductQuery.Order.values()) {
+                ProductQuery query = ProductQuery.all().bestBefore(from, null).orderBy(order, descending);
+                List<Integer> expected = ids(index.query(query, store));
+                assertEquals(50, expected.size());
+                for (int size : new int[]{1, 7, 50, 64}) {
+                    assertEquals(expected, pages(query, size), order + " descending " + descending + " size " + size);
+                }
+            }
+        }
+        List<Integer> all = pages(ProductQuery.all(), 7);
+        assertEquals(50, all.size());
+        assertEquals(50, all.stream().distinct().count());
+    }
+
+    @Test
+    void pagesStopAtLimit() {
+        for (int id = 1; id <= 30; id++) {
+            add(id, Rating.values()[id % 6]);
+        }
+        ProductQuery query = ProductQuery.all().orderBy(ProductQuery.Order.PRICE, true).limit(20);
+        ProductPage first = index.page(ProductPage.Cursor.start(query), 7, store);
+        ProductPage second = index.page(first.getNext(), 7, store);
+        ProductPage third = index.page(second.getNext(), 7, store);
+        assertEquals(6, third.getProducts().size());
+        assertFalse(third.hasNext());
+        assertEquals(ids(index.query(query, store)), pages(query, 7));
+        ProductQuery exact = ProductQuery.all().limit(14);
+        ProductPage full = index.page(index.page(ProductPage.Cursor.start(exact), 7, store).getNext(), 7, store);
+        assertEquals(7, full.getProducts().size());
+        assertFalse(full.hasNext());
+    }
+
+    @Test
+    void pagesSkipStaleRatingKeys() {
+        for (int id = 1; id <= 5; id++) {
+            add(id, Rating.values()[id]);
+        }
+        ProductEntry entry = store.get(2);
+        Product before = entry.getProduct();
+        Product after = before.applyRating(Rating.FIVE_STAR);
+        index.ratingChanging(before, after);
+        ProductQuery query = ProductQuery.all().orderBy(ProductQuery.Order.RATING, false);
+        assertEquals(List.of(1, 2, 3, 4, 5), ids(index.page(ProductPage.Cursor.start(query), 10, store).getProducts()));
+        entry.setProduct(after);
+        assertEquals(List.of(1, 3, 4, 2, 5), pages(query, 2));
+        ProductQuery descending = ProductQuery.all().orderBy(ProductQuery.Order.RATING, true);
+        assertEquals(List.of(5, 2, 4, 3, 1), pages(descending, 2));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductManagerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void closeWritesSubmittedReportsAndRejectsNewOnes() throws Exception {
+        ProductManager pm = new ProductManager(TestConfig.of(dir));
+        pm.createProduct(1, "Tea", new BigDecimal("1.99"), Rating.NOT_RATED);
+        CompletableFuture<Path> report = pm.printProductReportAsync(1, "en-GB", "before");
+        pm.close();
+        assertTrue(Files.exists(report.get(5, TimeUnit.SECONDS)));
+        CompletableFuture<Path> rejected = pm.printProductReportAsync(1, "en-GB", "after");
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    void journalsProductsBeforeAddingThem() throws Exception {
+        String longName = "x".repeat(70_000);
+        try (ProductManager pm = new ProductManager(TestConfig.of(dir, "journal.enabled", "true"))) {
+            assertNotNull(pm.createProduct(1, null, new BigDecimal("1.99"), Rating.NOT_RATED));
+            assertNotNull(pm.createProduct(2, longName, new BigDecimal("2.99"), Rating.NOT_RATED));
+            assertNull(pm.createProduct(3, "Cake", new BigDecimal("3.99"), Rating.NOT_RATED, null));
+            assertThrows(ProductManagerException.class, () -> pm.findProduct(3));
+            assertNotNull(pm.reviewProduct(2, Rating.FOUR_STAR, null));
+        }
+        try (ProductManager pm = new ProductManager(TestConfig.of(dir, "journal.enabled", "true"))) {
+            assertNull(pm.findProduct(1).getName());
+            assertEquals(longName, pm.findProduct(2).getName());
+            assertEquals(Rating.FOUR_STAR, pm.findProduct(2).getRating());
+            assertThrows(ProductManagerException.class, () -> pm.findProduct(3));
+        }
+    }
+
+    @Test
+    void streamsReportsAboveCachedReviewLimit() throws Exception {
+        Path streamed = report(dir.resolve("streamed"), "1");
+        Path cached = report(dir.resolve("cached"), "100000");
+        assertTrue(Files.size(streamed) > 4 * ReportWriter.CHUNK_SIZE);
+        assertEquals(Files.readString(cached, StandardCharsets.UTF_8), Files.readString(streamed, StandardCharsets.UTF_8));
+    }
+
+    private static Path report(Path root, String maxReviews) throws Exception {
+        try (ProductManager pm = new ProductManager(TestConfig.of(root, "report.cache.max.reviews", maxReviews))) {
+            pm.createProduct(1, "Tea \uD83C\uDF75", new BigDecimal("1.99"), Rating.NOT_RATED);
+            for (int i = 0; i < 2_000; i++) {
+                // odd lengths move the pairs across chunk boundaries
+                pm.reviewProduct(1, Rating.values()[1 + i % 5], "x".repeat(i % 7) + "\uD83C\uDF75 review " + i);
+            }
+            return pm.printProductReportAsync(1, "en-GB", "client").get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void closeUnregistersMetrics() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("labs.pm:type=ProductManager,*");
+        int registered = server.queryNames(pattern, null).size();
+        ProductManager pm = new ProductManager(TestConfig.of(dir, "metrics.enabled", "true", "metrics.dump.seconds", "60"));
+        assertEquals(registered + 1, server.queryNames(pattern, null).size());
+        pm.close();
+        assertEquals(registered, server.queryNames(pattern, null).size());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RatingStatsTest {
+
+    private static Rating average(List<Review> reviews) {
+        return Rateable.convert((int) Math.round(reviews.stream()
+                .mapToInt(review -> review.getRating().ordinal())
+                .average()
+                .orElse(0)));
+    }
+
+    @Test
+    void runningAggregateMatchesFullAverage() {
+        Random random = new Random(7);
+        Rating[] ratings = Rating.values();
+        RatingStats stats = new RatingStats();
+        List<Review> reviews = new ArrayList<>();
+        assertEquals(Rating.NOT_RATED, stats.getRating());
+        for (int i = 0; i < 5_000; i++) {
+            Rating rating = ratings[1 + random.nextInt(5)];
+            reviews.add(new Review(rating, null));
+            stats.add(rating);
+            assertEquals(average(reviews), stats.getRating(), "after " + reviews.size() + " reviews");
+        }
+        assertEquals(reviews.size(), stats.getCount());
+        RatingStats copy = new RatingStats(stats);
+        RatingStats recalculated = RatingStats.of(reviews);
+        for (Rating rating : ratings) {
+            long expected = reviews.stream().filter(review -> review.getRating() == rating).count();
+            assertEquals(expected, stats.getCount(rating));
+            assertEquals(expected, copy.getCount(rating));
+            assertEquals(expected, recalculated.getCount(rating));
+        }
+    }
+
+    @Test
+    void roundsHalfwayAveragesUp() {
+        RatingStats stats = new RatingStats();
+        stats.add(Rating.TWO_STAR);
+        stats.add(Rating.THREE_STAR);
+        assertEquals(Rating.THREE_STAR, stats.getRating());
+        stats.add(Rating.ONE_STAR, 2);
+        assertEquals(Rating.TWO_STAR, stats.getRating());
+        assertEquals(4, stats.getCount());
+    }
+
+    @Test
+    void productEntryRatingFollowsReviews() {
+        ProductEntry entry = new ProductEntry(new Drink(1, "Tea", BigDecimal.ONE, Rating.NOT_RATED));
+        ProductIndex index = new ProductIndex();
+        index.add(entry.getProduct());
+        List<Review> reviews = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            Review review = new Review(Rating.values()[1 + random.nextInt(5)], null);
+            reviews.add(review);
+            Product product = (i % 2 == 0) ? entry.addReview(review, index) : entry.addReviews(List.of(review), index);
+            assertEquals(average(reviews), product.getRating());
+        }
+    }
+}
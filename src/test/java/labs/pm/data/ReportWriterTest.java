@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportWriterTest {
+    private static final String PAIR = "🍵";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendsSurrogatePairsSplitAcrossChunks() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int offset = 1; offset < 5; offset++) {
+            text.append("a".repeat(ReportWriter.CHUNK_SIZE - offset)).append(PAIR).append("é€");
+        }
+        Path file = dir.resolve("append.txt");
+        try (ReportWriter out = ReportWriter.open(file)) {
+            out.append(text);
+        }
+        assertEquals(text.toString(), Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void flushesSurrogatePairsSplitAcrossChunks() throws Exception {
+        StringBuilder expected = new StringBuilder();
+        Path file = dir.resolve("buffer.txt");
+        try (ReportWriter out = ReportWriter.open(file)) {
+            StringBuilder txt = out.buffer();
+            for (int i = 0; i < 20_000; i++) {
+                String line = (i % 3 == 0 ? "x" : "") + PAIR + "€ review " + i + System.lineSeparator();
+                expected.append(line);
+                for (int c = 0; c < line.length(); c++) {
+                    txt.append(line.charAt(c));
+                    if (Character.isHighSurrogate(line.charAt(c))) {
+                        out.flushIfFull();
+                    }
+                }
+                out.flushIfFull();
+                assertTrue(txt.length() <= ReportWriter.CHUNK_SIZE + line.length());
+            }
+        }
+        assertEquals(expected.toString(), Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void truncatesExistingFiles() throws Exception {
+        Path file = Files.writeString(dir.resolve("old.txt"), "x".repeat(100_000));
+        try (ReportWriter out = ReportWriter.open(file)) {
+            out.append(PAIR);
+        }
+        assertEquals(PAIR, Files.readString(file, StandardCharsets.UTF_8));
+    }
+}
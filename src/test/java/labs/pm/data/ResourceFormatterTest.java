@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceFormatterTest {
+    private static final List<Product> PRODUCTS = List.of(
+            new Drink(1, "Tea", new BigDecimal("1.99"), Rating.NOT_RATED),
+            new Food(2, "Cake", new BigDecimal("1234567.50"), Rating.FIVE_STAR, LocalDate.of(2021, 12, 31)),
+            new Food(3, "It's {0} \"pie\"", new BigDecimal("0.01"), Rating.TWO_STAR, LocalDate.of(2021, 1, 1)),
+            new Drink(4, null, BigDecimal.ZERO, Rating.THREE_STAR));
+    private static final List<Review> REVIEWS = List.of(
+            new Review(Rating.FOUR_STAR, "Nice"),
+            new Review(Rating.ONE_STAR, null),
+            new Review(Rating.FIVE_STAR, "It's {1} 'quoted'\ttabbed"),
+            new Review(Rating.THREE_STAR, ""));
+
+    @Test
+    void matchesMessageFormatForSupportedLocales() {
+        for (String tag : ProductManager.getSupportedLocale()) {
+            Locale locale = Locale.forLanguageTag(tag);
+            ResourceFormatter formatter = new ResourceFormatter(locale);
+            ResourceBundle bundle = ResourceBundle.getBundle("resources", locale);
+            NumberFormat money = NumberFormat.getCurrencyInstance(locale);
+            DateTimeFormatter date = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).localizedBy(locale);
+            for (Product product : PRODUCTS) {
+                String expected = MessageFormat.format(bundle.getString("product"), product.getName(),
+                        money.format(product.getPrice()), product.getRating().getStars(),
+                        date.format(product.getBestBefore()));
+                assertEquals(expected, formatter.formatProduct(product), tag);
+                assertEquals(expected, formatter.formatProduct(product, new StringBuilder()).toString(), tag);
+                assertEquals(money.format(product.getPrice()), formatter.formatMoney(product.getPrice()), tag);
+            }
+            for (Review review : REVIEWS) {
+                String expected = MessageFormat.format(bundle.getString("review"),
+                        review.getRating().getStars(), review.getComments());
+                assertEquals(expected, formatter.formatReview(review), tag);
+            }
+        }
+    }
+
+    @Test
+    void appendsToExistingText() {
+        ResourceFormatter formatter = new ResourceFormatter(Locale.UK);
+        StringBuilder txt = new StringBuilder("> ");
+        formatter.formatReview(REVIEWS.get(0), txt);
+        formatter.appendMoney(new BigDecimal("2.50"), txt.append(' '));
+        assertEquals("> " + formatter.formatReview(REVIEWS.get(0)) + " £2.50", txt.toString());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewLogTest {
+    @TempDir
+    Path dir;
+
+    private final List<Integer> ids = new ArrayList<>();
+    private final List<Review> reviews = new ArrayList<>();
+
+    @Test
+    void readsAppendedReviews() throws IOException {
+        Path file = dir.resolve("reviews.bin");
+        String longComment = "ü".repeat(50_000);
+        try (ReviewLog log = new ReviewLog(file)) {
+            assertEquals(0, log.open(this::collect));
+            log.append(101, new Review(Rating.FOUR_STAR, "Nice"));
+            log.append(102, new Review(Rating.ONE_STAR, null));
+            log.append(101, new Review(Rating.FIVE_STAR, ""));
+            log.append(103, new Review(Rating.TWO_STAR, longComment));
+        }
+        assertEquals(4, reopen(file));
+        assertEquals(List.of(101, 102, 101, 103), ids);
+        assertEquals("Nice", reviews.get(0).getComments());
+        assertEquals(Rating.FOUR_STAR, reviews.get(0).getRating());
+        assertNull(reviews.get(1).getComments());
+        assertEquals(Rating.ONE_STAR, reviews.get(1).getRating());
+        assertEquals("", reviews.get(2).getComments());
+        assertEquals(longComment, reviews.get(3).getComments());
+    }
+
+    @Test
+    void truncatesTornTail() throws IOException {
+        Path file = dir.resolve("reviews.bin");
+        try (ReviewLog log = new ReviewLog(file)) {
+            log.open(this::collect);
+            log.append(101, new Review(Rating.THREE_STAR, "one"));
+        }
+        long complete = Files.size(file);
+        Files.write(file, new byte[]{3, 0, 0, 0, 101, 0, 0, 0, 9, 'x'}, StandardOpenOption.APPEND);
+        try (ReviewLog log = new ReviewLog(file)) {
+            assertEquals(1, log.open(this::collect));
+            assertEquals(complete, Files.size(file));
+            log.append(101, new Review(Rating.THREE_STAR, "two"));
+        }
+        ids.clear();
+        reviews.clear();
+        assertEquals(2, reopen(file));
+        assertEquals("two", reviews.get(1).getComments());
+    }
+
+    @Test
+    void rejectsForeignFile() throws IOException {
+        Path file = dir.resolve("reviews.bin");
+        Files.write(file, new byte[]{1, 2, 3, 4, 0, 0, 0, 1});
+        ReviewLog log = new ReviewLog(file);
+        assertThrows(IOException.class, () -> log.open(this::collect));
+    }
+
+    private long reopen(Path file) throws IOException {
+        try (ReviewLog log = new ReviewLog(file)) {
+            return log.open(this::collect);
+        }
+    }
+
+    private void collect(Review review, int id) {
+        ids.add(id);
+        reviews.add(review);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotCodecTest {
+    @TempDir
+    Path dir;
+
+    private final Map<Product, List<Review>> data = new LinkedHashMap<>();
+    private final Map<Integer, RatingStats> stats = new HashMap<>();
+
+    SnapshotCodecTest() {
+        data.put(new Food(1, "Cake", new BigDecimal("3.99"), Rating.FOUR_STAR, LocalDate.of(2021, 4, 19)),
+                List.of(new Review(Rating.FIVE_STAR, "Lovely"), new Review(Rating.THREE_STAR, null)));
+        data.put(new Drink(2, "Tea", new BigDecimal("1.50"), Rating.NOT_RATED),
+                List.of(new Review(Rating.ONE_STAR, "ç".repeat(70_000))));
+        data.put(new Drink(3, "Coffee", new BigDecimal("-0.001"), Rating.NOT_RATED), List.of());
+        RatingStats cake = RatingStats.of(data.get(data.keySet().iterator().next()));
+        // stats may count more reviews than the snapshot carries
+        cake.add(Rating.TWO_STAR, 5);
+        stats.put(1, cake);
+    }
+
+    @Test
+    void roundTripsUncompressed() throws IOException {
+        assertRoundTrip(false);
+    }
+
+    @Test
+    void roundTripsCompressed() throws IOException {
+        assertRoundTrip(true);
+    }
+
+    @Test
+    void roundTripsFile() throws IOException {
+        Path file = dir.resolve("snapshot.bin");
+        SnapshotCodec.write(file, data, stats, true, 7);
+        Map<Product, List<Review>> restored = new HashMap<>();
+        Map<Integer, RatingStats> restoredStats = new HashMap<>();
+        assertEquals(7, SnapshotCodec.read(file, restored, restoredStats, StandardOpenOption.READ));
+        assertEquals(data.keySet(), restored.keySet());
+    }
+
+    @Test
+    void rejectsForeignData() {
+        byte[] bytes = {1, 2, 3, 4, 0, 0, 0, 2, 0};
+        assertThrows(IOException.class, () ->
+                SnapshotCodec.read(new ByteArrayInputStream(bytes), new HashMap<>(), new HashMap<>()));
+    }
+
+    @Test
+    void rejectsTruncatedData() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodec.write(bytes, data, stats, false);
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2);
+        assertThrows(IOException.class, () ->
+                SnapshotCodec.read(new ByteArrayInputStream(truncated), new HashMap<>(), new HashMap<>()));
+    }
+
+    private void assertRoundTrip(boolean compress) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotCodec.write(bytes, data, stats, compress, 42);
+        Map<Product, List<Review>> restored = new HashMap<>();
+        Map<Integer, RatingStats> restoredStats = new HashMap<>();
+        assertEquals(42, SnapshotCodec.read(new ByteArrayInputStream(bytes.toByteArray()), restored, restoredStats));
+        assertEquals(data.size(), restored.size());
+        for (Map.Entry<Product, List<Review>> entry : data.entrySet()) {
+            Product product = entry.getKey();
+            Product copy = restored.keySet().stream()
+                    .filter(product::equals).findFirst().orElseThrow();
+            assertEquals(product.getClass(), copy.getClass());
+            assertEquals(product.getName(), copy.getName());
+            assertEquals(product.getPrice(), copy.getPrice());
+            assertEquals(product.getRating(), copy.getRating());
+            assertEquals(product.getBestBefore(), copy.getBestBefore());
+            List<Review> reviews = restored.get(copy);
+            assertEquals(entry.getValue().size(), reviews.size());
+            for (int i = 0; i < reviews.size(); i++) {
+                assertEquals(entry.getValue().get(i).getRating(), reviews.get(i).getRating());
+                assertEquals(entry.getValue().get(i).getComments(), reviews.get(i).getComments());
+            }
+            RatingStats expected = stats.getOrDefault(product.getId(), RatingStats.of(entry.getValue()));
+            for (Rating rating : Rating.values()) {
+                assertEquals(expected.getCount(rating), restoredStats.get(product.getId()).getCount(rating));
+            }
+        }
+    }
+}
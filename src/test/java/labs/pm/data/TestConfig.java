@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2021  Halils.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH
+ * THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package labs.pm.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+/**
+ * {@code TestConfig} builds a configuration of the default {@code config}
+ * bundle whose data, reports and temp folders are under a test folder
+ */
+final class TestConfig {
+    private TestConfig() {
+    }
+
+    /**
+     * @param settings pairs of keys and values overriding the defaults
+     */
+    static ResourceBundle of(Path root, String... settings) throws IOException {
+        ResourceBundle defaults = ResourceBundle.getBundle("config");
+        Map<String, String> values = new HashMap<>();
+        defaults.keySet().forEach(key -> values.put(key, defaults.getString(key)));
+        for (String folder : new String[]{"data", "reports", "temp"}) {
+            Path path = Files.createDirectories(root.resolve(folder));
+            values.put(folder + ".folder", path.toString());
+        }
+        for (int i = 0; i + 1 < settings.length; i += 2) {
+            values.put(settings[i], settings[i + 1]);
+        }
+        return new ResourceBundle() {
+            @Override
+            protected Object handleGetObject(String key) {
+                return values.get(key);
+            }
+
+            @Override
+            public Enumeration<String> getKeys() {
+                return Collections.enumeration(values.keySet());
+            }
+        };
+    }
+}